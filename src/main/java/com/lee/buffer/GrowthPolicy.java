@@ -0,0 +1,77 @@
+package com.lee.buffer;
+
+import static com.lee.util.PlatformDependent.hasUnsafe;
+import static com.lee.util.PlatformDependent.memoryPageSize;
+
+/**
+ * Decides the new capacity of an expanding rolling char buffer, set by {@link RollingCharBuffer#setGrowthPolicy(GrowthPolicy)}.
+ * the returned capacity is never less than the required one, however large a single put is.
+ */
+public abstract class GrowthPolicy {
+
+	private static final GrowthPolicy DEFAULT = new GrowthPolicy() {
+		@Override
+		public int newCapacity(int capacity, int required) {
+			long grown = required - capacity <= capacity / 2 ? capacity * 3L / 2 + 1 : capacity * 2L;
+			return (int) Math.min(Integer.MAX_VALUE, Math.max(grown, required));
+		}
+	};
+
+	private static final GrowthPolicy EXACT_FIT = new GrowthPolicy() {
+		@Override
+		public int newCapacity(int capacity, int required) {
+			return required;
+		}
+	};
+
+	/**
+	 * new capacity of the buffer.
+	 * @param capacity	current capacity, in chars
+	 * @param required	minimum new capacity, in chars
+	 * @return	new capacity, not less than <code>required</code>
+	 */
+	public abstract int newCapacity(int capacity, int required);
+
+	/** grow by 1.5 times for a small put, or 2 times for a large one, at least to the required capacity **/
+	public static GrowthPolicy defaults() {
+		return DEFAULT;
+	}
+
+	/** grow to the required capacity only, no spare chars **/
+	public static GrowthPolicy exactFit() {
+		return EXACT_FIT;
+	}
+
+	/**
+	 * grow by <code>factor</code> times, but at most <code>maxIncrement</code> chars a time,
+	 * at least to the required capacity.
+	 * @throws	IllegalArgumentException
+     *          If the <tt>factor</tt> isn't more than 1 or the <tt>maxIncrement</tt> isn't a positive integer
+	 */
+	public static GrowthPolicy geometric(final double factor, final int maxIncrement) {
+		if(!(factor > 1) || maxIncrement < 1) {
+			throw new IllegalArgumentException("growth factor must be more than 1 and max increment must be a positive integer.");
+		}
+		return new GrowthPolicy() {
+			@Override
+			public int newCapacity(int capacity, int required) {
+				long increment = Math.min((long) Math.ceil(capacity * (factor - 1)), maxIncrement);
+				return (int) Math.min(Integer.MAX_VALUE, Math.max(capacity + increment, required));
+			}
+		};
+	}
+
+	/** grow by the {@link #defaults() default} policy, rounded up to whole OS memory pages **/
+	public static GrowthPolicy pageAligned() {
+		final int page = hasUnsafe() ? memoryPageSize() : 2048;	// chars of a common 4K page
+		return new GrowthPolicy() {
+			@Override
+			public int newCapacity(int capacity, int required) {
+				long grown = DEFAULT.newCapacity(capacity, required);
+				long aligned = (grown + page - 1) / page * page;
+				return aligned <= Integer.MAX_VALUE ? (int) aligned : Math.max(required, Integer.MAX_VALUE / page * page);
+			}
+		};
+	}
+
+}
@@ -2,13 +2,35 @@ package com.lee.buffer;
 
 import static com.lee.util.PlatformDependent.hasUnsafe;;
 
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.lee.buffer.RollingCharBufferCursor.Policy;
+import com.lee.util.ParallelCopier;
+import com.lee.util.PlatformDependent;
+
 /** Non thread safe buffer **/
 public abstract class RollingCharBuffer {
 
+	private static final long HASH_BASE = 0x9E3779B97F4A7C15L;		// odd, invertible modulo 2^64
+	private static final long HASH_BASE_INVERSE = inverse(HASH_BASE);
+
 	private boolean isReleased;	// mark this buffer whether released by caller or not
 	protected int putIndex;
 	protected int takeIndex;
 	protected int size;
+	private Utf8Codec utf8;		// UTF-8 codec created on the first UTF-8 operation
+	private char[] scratch;		// chunk to move chars in and out of the buffer not backed by array
+	private long takePosition;	// logical position of take index, counted from the first char put
+	private RollingCharBufferCursor[] cursors = new RollingCharBufferCursor[0];	// multicast read cursors
+	private boolean hashing;	// maintain the rolling hash of the reserved chars or not
+	private long hash;			// rolling hash of the reserved chars
+	private long hashPower;		// HASH_BASE ^ size
+	private GrowthPolicy growthPolicy = GrowthPolicy.defaults();
+	private ParallelCopier copier;	// copy large content in parallel if set
+	private Closeable session;		// open writer or reader session
 
 	/**
 	 * Allocate a rolling char buffer with fixed <code>capacity</code> size from JVM Heap.
@@ -37,6 +59,38 @@ public abstract class RollingCharBuffer {
 		return isDirect && hasUnsafe() ? new RollingDirectCharBuffer(capacity) : new RollingHeapCharBuffer(capacity);
 	}
 
+	/**
+	 * Allocate a rolling char buffer which keeps at most <code>memoryThreshold</code> chars of content in memory
+	 * and spills the overflowed middle content to a temporary file in the default temporary-file directory.
+	 * @param memoryThreshold	max chars of content kept in memory
+	 * @return	a spilling rolling char buffer
+	 * @throws	IllegalArgumentException
+     *          If the <tt>memoryThreshold</tt> is less than 2
+	 */
+	public final static RollingCharBuffer allocateSpilling(int memoryThreshold) {
+		return allocateSpilling(memoryThreshold, false, null);
+	}
+
+	/**
+	 * Allocate a rolling char buffer which keeps at most <code>memoryThreshold</code> chars of content in memory.
+	 * the head (being taken) and the tail (being put) regions stay in memory, the middle content is
+	 * spilled to a temporary file and read back sequentially as the taker catches up. besides the
+	 * regions, the buffer holds a scratch of at most 16KB to move the chars between memory and file.
+	 * @param memoryThreshold	max chars of content kept in memory, split between the head and the tail region
+	 * @param isDirect	if true, allocate the in-memory regions from OS's direct memory, otherwise,
+	 * 					allocate them from JVM Heap.
+	 * @param directory	directory the spill file created in, <code>null</code> for the default temporary-file directory
+	 * @return	a spilling rolling char buffer
+	 * @throws	IllegalArgumentException
+     *          If the <tt>memoryThreshold</tt> is less than 2
+	 */
+	public final static RollingCharBuffer allocateSpilling(int memoryThreshold, boolean isDirect, File directory) {
+		if(memoryThreshold < 2) {
+			throw new IllegalArgumentException("buffer's memory threshold must be at least 2.");
+		}
+		return new RollingSpillCharBuffer(memoryThreshold, isDirect, directory);
+	}
+
 	/**
      * Wraps a char array into a rolling buffer.
      *
@@ -66,9 +120,20 @@ public abstract class RollingCharBuffer {
 	/** don't change the internal buffer, just reset the position **/
 	public final void reset() {
 		checkReleased();
+		clear();
+		takePosition += size;
 		resetIndex();
+		hash = 0;
+		hashPower = 1;
+		if(utf8 != null) { utf8.reset(); }
+		for(RollingCharBufferCursor cursor : cursors) {
+			cursor.position = takePosition;
+		}
 	}
 	
+	/** subclass holding content outside the take/put index range discard it on {@link #reset()} **/
+	protected void clear() { }
+	
 	/** internal reset the read and write index **/
 	protected final void resetIndex() {
 		takeIndex = putIndex = size = 0;
@@ -127,13 +192,89 @@ public abstract class RollingCharBuffer {
 	
 	/** ensure the buffer to satisfy the new added <code>incCap</code> chars, if not, expand itself **/
 	protected abstract void ensureCapacity(int incCap);
+	
+	/** set the policy deciding the new capacity on expanding **/
+	public final void setGrowthPolicy(GrowthPolicy growthPolicy) {
+		checkReleased();
+		if(growthPolicy == null) {
+			throw new IllegalArgumentException("growth policy is null.");
+		}
+		this.growthPolicy = growthPolicy;
+	}
+	
+	public final GrowthPolicy growthPolicy() {
+		checkReleased();
+		return growthPolicy;
+	}
+	
+	/** new capacity to satisfy the new added <code>incCap</code> chars, decided by the growth policy **/
+	protected final int newCapacity(int incCap) {
+		long required = (long) size + incCap + 1;	// a free slot is kept, the same as put
+		if(required > Integer.MAX_VALUE) {
+			throw new IllegalStateException("buffer's capacity can't exceed " + Integer.MAX_VALUE + " characters");
+		}
+		int newCapacity = growthPolicy.newCapacity(retCapacity(), (int) required);
+		if(newCapacity < required) {
+			throw new IllegalStateException("growth policy returned less capacity than required");
+		}
+		return newCapacity;
+	}
+	
+	/** make room for <code>len</code> chars, apply the slow cursors' policies before expanding **/
+	private void reserve(int len) {
+		if(remained() <= len) {
+			if(cursors.length > 0) { overrun(len); }
+			if(remained() <= len) {
+				ensureCapacity(len);
+			}
+		}
+	}
+
+	/**
+	 * copy the large content of expanding and taking in parallel by <code>copier</code>,
+	 * or by the caller alone if <code>copier</code> is null
+	 */
+	public final void setParallelCopier(ParallelCopier copier) {
+		checkReleased();
+		this.copier = copier;
+	}
+	
+	public final ParallelCopier parallelCopier() {
+		checkReleased();
+		return copier;
+	}
+	
+	/** copy chars between arrays, in parallel if a copier is set **/
+	protected final void copyChars(char[] src, int srcPos, char[] dest, int destPos, int length) {
+		if(copier == null) {
+			System.arraycopy(src, srcPos, dest, destPos, length);
+		}else {
+			copier.arraycopy(src, srcPos, dest, destPos, length);
+		}
+	}
+	
+	/** copy chars between memory blocks not overlapped, in parallel if a copier is set **/
+	protected final void copyChars(long srcMemAddr, int srcOffset, long destMemAddr, int destOffset, int chars) {
+		if(copier == null) {
+			PlatformDependent.copyMemory(srcMemAddr, srcOffset, destMemAddr, destOffset, chars);
+		}else {
+			copier.copyMemory(srcMemAddr, srcOffset, destMemAddr, destOffset, chars);
+		}
+	}
+	
+	/** copy chars from memory block to array, in parallel if a copier is set **/
+	protected final void copyChars(long address, int offset, char[] arr, int beginIndex, int endIndex) {
+		if(copier == null) {
+			PlatformDependent.readChars(address, offset, arr, beginIndex, endIndex);
+		}else {
+			copier.readChars(address, offset, arr, beginIndex, endIndex);
+		}
+	}
 
 	/** write one char, if remained capacity isn't enough, expand then write **/
 	public final void put(char ch) {
 		checkReleased();
-		if(remained() <= 1) {
-			ensureCapacity(1);
-		}
+		reserve(1);
 		write(ch);
 		shiftPutIndex(1);
 	}
@@ -145,9 +286,7 @@ public abstract class RollingCharBuffer {
 	public final void put(char[] arr) {
 		checkReleased();
 		int len = arr.length;
-		if(remained() <= len) {
-			ensureCapacity(len);
-		}
+		reserve(len);
 		write(arr, 0, len);
 		shiftPutIndex(len);
 	}
@@ -163,9 +302,7 @@ public abstract class RollingCharBuffer {
 			throw new IllegalStateException("array started with offset has no specified size characters");
 		}
 		
-		if(remained() <= size) {
-			ensureCapacity(size);
-		}
+		reserve(size);
 		write(arr, offset, size);
 		shiftPutIndex(size);
 	}
@@ -173,23 +310,252 @@ public abstract class RollingCharBuffer {
 	/** write <code>size</code> chars from <code>arr</code> started with <code>offset</code> **/
 	protected abstract void write(char[] arr, int offset, int size);
 
+	/** write all <code>parts</code> in order, the capacity is checked and expanded once for the whole batch **/
+	public final void put(char[]... parts) {
+		checkReleased();
+		long len = 0;
+		for(char[] part : parts) {
+			if(part == null) {
+				throw new IllegalStateException("part to put is null");
+			}
+			len += part.length;
+		}
+		reserve(batchLength(len));
+		for(char[] part : parts) {
+			write(part, 0, part.length);
+			putShifted(part.length);
+		}
+	}
+	
+	/** write all <code>parts</code> in order, the capacity is checked and expanded once for the whole batch **/
+	public final void put(CharSequence... parts) {
+		checkReleased();
+		long len = 0;
+		for(CharSequence part : parts) {
+			if(part == null) {
+				throw new IllegalStateException("part to put is null");
+			}
+			len += part.length();
+		}
+		reserve(batchLength(len));
+		for(CharSequence part : parts) {
+			write(part);
+		}
+	}
+	
+	/** total length of a batch put, if it exceeds the max capacity, throw a {@link IllegalStateException} **/
+	private static int batchLength(long len) {
+		if(len > Integer.MAX_VALUE) {
+			throw new IllegalStateException("buffer's capacity can't exceed " + Integer.MAX_VALUE + " characters");
+		}
+		return (int) len;
+	}
+	
+	/** write <code>seq</code> straight into the backend array, or through the scratch **/
+	private void write(CharSequence seq) {
+		int len = seq.length();
+		if(isArrayBacked()) {
+			char[] buffer = backendArray();
+			int tailLen = Math.min(len, retCapacity() - putIndex);
+			getChars(seq, 0, tailLen, buffer, putIndex);
+			getChars(seq, tailLen, len, buffer, 0);
+			putShifted(len);
+			return;
+		}
+		char[] chars = scratch();
+		for(int begin = 0; begin < len; ) {
+			int end = Math.min(len, begin + chars.length);
+			getChars(seq, begin, end, chars, 0);
+			write(chars, 0, end - begin);
+			putShifted(end - begin);
+			begin = end;
+		}
+	}
+	
+	/** copy chars of <code>seq[begin, end)</code> to <code>dst</code> started with <code>dstBegin</code> **/
+	private static void getChars(CharSequence seq, int begin, int end, char[] dst, int dstBegin) {
+		if(seq instanceof String) {
+			((String) seq).getChars(begin, end, dst, dstBegin);
+		}else if(seq instanceof StringBuilder) {
+			((StringBuilder) seq).getChars(begin, end, dst, dstBegin);
+		}else if(seq instanceof StringBuffer) {
+			((StringBuffer) seq).getChars(begin, end, dst, dstBegin);
+		}else {
+			for(int i = begin; i < end; i++) {
+				dst[dstBegin++] = seq.charAt(i);
+			}
+		}
+	}
+
+	/** decode UTF-8 bytes of <code>arr</code> and write the chars, if remained capacity isn't enough, expand then write **/
+	public final void putUtf8(byte[] arr) {
+		putUtf8(arr, 0, arr.length);
+	}
+	
+	/**
+	 * decode <code>size</code> UTF-8 bytes from <code>arr</code> started with <code>offset</code> and write the chars.
+	 * a multibyte sequence split at the end is kept and completed by the next <code>putUtf8</code>, malformed
+	 * input is decoded to <code>U+FFFD</code>. if <code>arr</code> started with <code>offset</code> has no
+	 * specified <code>size</code> bytes, throw a {@link IllegalStateException}
+	 */
+	public final void putUtf8(byte[] arr, int offset, int size) {
+		putUtf8(arr, offset, size, false);
+	}
+	
+	/**
+	 * {@link #putUtf8(byte[], int, int)}, and if <code>endOfInput</code> is true, no more bytes follow:
+	 * a multibyte sequence truncated at the end is decoded to <code>U+FFFD</code> instead of being kept.
+	 */
+	public final void putUtf8(byte[] arr, int offset, int size, boolean endOfInput) {
+		checkReleased();
+		if(arr == null || offset < 0 || size < 0 || (arr.length - offset) < size) {
+			throw new IllegalStateException("array started with offset has no specified size bytes");
+		}
+		decodeUtf8(arr, offset, offset+size);
+		if(endOfInput) { endUtf8(); }
+	}
+	
+	/** decode the remaining UTF-8 bytes of <code>src</code> and write the chars, the position of <code>src</code> is advanced to its limit **/
+	public final void putUtf8(ByteBuffer src) {
+		putUtf8(src, false);
+	}
+	
+	/**
+	 * {@link #putUtf8(ByteBuffer)}, and if <code>endOfInput</code> is true, no more bytes follow:
+	 * a multibyte sequence truncated at the end is decoded to <code>U+FFFD</code> instead of being kept.
+	 */
+	public final void putUtf8(ByteBuffer src, boolean endOfInput) {
+		checkReleased();
+		if(src == null) {
+			throw new IllegalStateException("source byte buffer is null");
+		}
+		if(src.hasArray()) {
+			int begin = src.arrayOffset() + src.position();
+			decodeUtf8(src.array(), begin, begin + src.remaining());
+			src.position(src.limit());
+		}else {
+			byte[] bytes = utf8().bytes;
+			while(src.hasRemaining()) {
+				int len = Math.min(src.remaining(), bytes.length);
+				src.get(bytes, 0, len);
+				decodeUtf8(bytes, 0, len);
+			}
+		}
+		if(endOfInput) { endUtf8(); }
+	}
+	
+	/** write <code>U+FFFD</code> for the multibyte sequence truncated by the end of input **/
+	private void endUtf8() {
+		if(utf8().endOfInput()) {
+			reserve(1);
+			write(Utf8Codec.REPLACEMENT);
+			putShifted(1);
+		}
+	}
+	
+	/** decode UTF-8 bytes of <code>arr[begin, end)</code> straight into the backend array, or through the scratch **/
+	private void decodeUtf8(byte[] arr, int begin, int end) {
+		Utf8Codec codec = utf8();
+		while(begin < end || codec.hasPending()) {
+			int required = end - begin + 1;	// a byte decoded to one char at most, plus a pending char
+			reserve(required);
+			int writable = isArrayBacked() ? Math.min(remained(), retCapacity() - putIndex) : remained();
+			if(isArrayBacked()) {
+				codec.decode(arr, begin, end, backendArray(), putIndex, putIndex + writable);
+				putShifted(codec.dstIndex - putIndex);
+			}else {
+				char[] chars = scratch();
+				codec.decode(arr, begin, end, chars, 0, Math.min(writable, chars.length));
+				int len = codec.dstIndex;
+				write(chars, 0, len);
+				putShifted(len);
+			}
+			begin = codec.srcIndex;
+		}
+	}
+	
+	/**
+	 * encode chars to <code>dst</code> as UTF-8 until <code>dst</code> is full or the buffer is empty, a char
+	 * is never split. a high surrogate at the end of buffer is kept until its low surrogate written,
+	 * unpaired surrogate is encoded to <code>'?'</code>.
+	 * @return	number of chars taken
+	 */
+	public final int takeUtf8(ByteBuffer dst) {
+		checkReleased();
+		checkTakable();
+		if(dst == null) {
+			throw new IllegalStateException("destination byte buffer is null");
+		}
+		Utf8Codec codec = utf8();
+		int taken = 0;
+		while(size > 0 && dst.hasRemaining()) {
+			char[] src;
+			int begin, end;
+			if(isArrayBacked()) {
+				src = backendArray();
+				begin = takeIndex;
+				end = takeIndex + Math.min(size, retCapacity() - takeIndex);
+			}else {
+				src = scratch();
+				begin = 0;
+				end = Math.min(Math.min(size, src.length), dst.remaining());	// a char is encoded to one byte at least
+				read(src, begin, end);
+			}
+			int len = encodeUtf8(codec, src, begin, end, dst);
+			if(len == 0 && size > 1 && Character.isHighSurrogate(src[begin])) {
+				// surrogate pair split by the wrap point
+				read(codec.pair, 0, 2);
+				len = encodeUtf8(codec, codec.pair, 0, 2, dst);
+			}
+			if(len == 0) { break; }
+			takeShifted(len);
+			taken += len;
+		}
+		return taken;
+	}
+	
+	/** encode chars of <code>src[begin, end)</code> to <code>dst</code>, return the number of encoded chars **/
+	private int encodeUtf8(Utf8Codec codec, char[] src, int begin, int end, ByteBuffer dst) {
+		if(dst.hasArray()) {
+			int position = dst.arrayOffset() + dst.position();
+			codec.encode(src, begin, end, dst.array(), position, dst.arrayOffset() + dst.limit());
+			dst.position(dst.position() + codec.dstIndex - position);
+		}else {
+			byte[] bytes = codec.bytes;
+			codec.encode(src, begin, end, bytes, 0, Math.min(dst.remaining(), bytes.length));
+			dst.put(bytes, 0, codec.dstIndex);
+		}
+		return codec.srcIndex - begin;
+	}
+	
+	private Utf8Codec utf8() {
+		if(utf8 == null) { utf8 = new Utf8Codec(); }
+		return utf8;
+	}
+	
+	private char[] scratch() {
+		if(scratch == null) { scratch = new char[1024]; }
+		return scratch;
+	}
+
 	/** read one char.
 	 * if buffer's reserved char size &lt; <code>1</code>,
 	 * throw a {@link IllegalStateException}
 	 **/
 	public final char take() {
 		checkReleased();
+		checkTakable();
 		if(size < 1) {
 			throw new IllegalStateException("no character can be taken");
 		}
 
 		char ch = read();
-		shiftTakeIndex(1);
+		takeShifted(1);
 
 		return ch;
 	}
 
-	/** read a char from buffer **/
+	/** read a char from buffer, the take index is shifted by caller **/
 	protected abstract char read();
 
 	/** read <code>size</code> chars.
@@ -198,13 +564,14 @@ public abstract class RollingCharBuffer {
 	 **/
 	public final char[] take(int size) {
 		checkReleased();
+		checkTakable();
 		if(size < 1 || size > this.size) {
 			throw new IllegalStateException("taken size less than 1 or more characters taken than the buffer size");
 		}
 
 		char[] tmp = new char[size];
 		read(tmp, 0, size);
-		shiftTakeIndex(size);
+		takeShifted(size);
 
 		return tmp;
 	}
@@ -217,6 +584,7 @@ public abstract class RollingCharBuffer {
 	 */
 	public final void take(char[] arr, int offset, int size) {
 		checkReleased();
+		checkTakable();
 		if(arr == null || offset < 0 || (arr.length - offset) < size) {
 			throw new IllegalStateException("no enough array space to place the required characters");
 		}
@@ -225,12 +593,37 @@ public abstract class RollingCharBuffer {
 		}
 		
 		read(arr, offset, size);
-		shiftTakeIndex(size);
+		takeShifted(size);
 	}
 
-	/** read <code>size</code> chars to <code>arr</code> started with <code>offset</code> **/
+	/** read <code>size</code> chars to <code>arr</code> started with <code>offset</code>, the take index is shifted by caller **/
 	protected abstract void read(char[] arr, int offset, int size);
 
+	/**
+	 * read chars to fill up each of <code>arrs</code> in order.
+	 * if buffer's reserved char size &lt; total length of <code>arrs</code>,
+	 * throw a {@link IllegalStateException}
+	 */
+	public final void take(char[]... arrs) {
+		checkReleased();
+		checkTakable();
+		long len = 0;
+		for(char[] arr : arrs) {
+			if(arr == null) {
+				throw new IllegalStateException("array to place the taken characters is null");
+			}
+			len += arr.length;
+		}
+		if(len > this.size) {
+			throw new IllegalStateException("more characters taken than the buffer size");
+		}
+		
+		for(char[] arr : arrs) {
+			read(arr, 0, arr.length);
+			takeShifted(arr.length);
+		}
+	}
+
 	/** read all reserved chars **/
 	public final char[] takeAll() {
 		checkReleased();
@@ -243,6 +636,300 @@ public abstract class RollingCharBuffer {
 		take(buf, offset, size);
 	}
 
+	/** read a char at <code>index</code> chars after the take index **/
+	protected abstract char read(int index);
+	
+	/** read <code>size</code> chars at <code>index</code> chars after the take index to <code>arr</code> started with <code>offset</code> **/
+	protected abstract void read(int index, char[] arr, int offset, int size);
+
+	/**
+	 * open a read cursor which never loses a char, see {@link #openCursor(Policy)}
+	 */
+	public final RollingCharBufferCursor openCursor() {
+		return openCursor(Policy.EXPAND);
+	}
+	
+	/**
+	 * open an independent read cursor, started with the oldest char held by this buffer.
+	 * once a cursor is open, this buffer is multicast: the chars are taken by the cursors only, and
+	 * reclaimed after the slowest cursor has passed them. the take operations of this buffer throw a
+	 * {@link IllegalStateException} until all cursors are closed.
+	 * @param policy	what happens to the cursor when it is too slow for the writer
+	 */
+	public final RollingCharBufferCursor openCursor(Policy policy) {
+		checkReleased();
+		if(policy == null) {
+			throw new IllegalArgumentException("cursor's policy is null.");
+		}
+		RollingCharBufferCursor cursor = new RollingCharBufferCursor(this, policy, takePosition);
+		cursors = Arrays.copyOf(cursors, cursors.length + 1);
+		cursors[cursors.length - 1] = cursor;
+		return cursor;
+	}
+	
+	/** logical position of the take index **/
+	final long takePosition() {
+		checkReleased();
+		return takePosition;
+	}
+	
+	/** logical position of the put index **/
+	final long putPosition() {
+		checkReleased();
+		return takePosition + size;
+	}
+	
+	final void removeCursor(RollingCharBufferCursor cursor) {
+		for(int i = 0; i < cursors.length; i++) {
+			if(cursors[i] == cursor) {
+				RollingCharBufferCursor[] tmp = new RollingCharBufferCursor[cursors.length - 1];
+				System.arraycopy(cursors, 0, tmp, 0, i);
+				System.arraycopy(cursors, i + 1, tmp, i, tmp.length - i);
+				cursors = tmp;
+				if(!isReleased) { reclaim(); }
+				return;
+			}
+		}
+	}
+	
+	/** advance the take index to the slowest cursor **/
+	final void reclaim() {
+		if(cursors.length == 0) { return; }
+		long slowest = Long.MAX_VALUE;
+		for(RollingCharBufferCursor cursor : cursors) {
+			slowest = Math.min(slowest, cursor.position);
+		}
+		if(slowest > takePosition) {
+			takeShifted((int) (slowest - takePosition));
+		}
+	}
+	
+	/** lap or detach the slow cursors to make room for <code>len</code> chars, never passing a {@link Policy#EXPAND} cursor **/
+	private void overrun(int len) {
+		long target = takePosition + Math.min(size, size + len + 1 - retCapacity());
+		for(RollingCharBufferCursor cursor : cursors) {
+			if(cursor.policy() == Policy.EXPAND) {
+				target = Math.min(target, cursor.position);
+			}
+		}
+		boolean detached = false;
+		for(RollingCharBufferCursor cursor : cursors) {
+			if(cursor.position < target && cursor.policy() != Policy.EXPAND) {
+				cursor.overrun(target);
+				detached |= cursor.isDetached();
+			}
+		}
+		if(detached) {
+			int count = 0;
+			for(RollingCharBufferCursor cursor : cursors) {
+				if(!cursor.isDetached()) { cursors[count++] = cursor; }
+			}
+			cursors = Arrays.copyOf(cursors, count);
+		}
+		reclaim();
+	}
+	
+	/**
+	 * open a writer session over the free space without expanding, see {@link #openWriter(int)}.
+	 * the session of a full buffer offers no char, the one of a buffer not backed by array or memory reserves 1024 chars.
+	 */
+	public final RollingCharBufferWriter openWriter() {
+		checkReleased();
+		return openWriter(isArrayBacked() || backendAddress() != 0 ? Math.max(0, remained() - 1) : scratch().length);
+	}
+	
+	/**
+	 * open a batch write session reserving <code>maxChars</code> chars, expanding the buffer if necessary.
+	 * the buffer is validated once here, the put of the session doesn't check it again. this buffer throws a
+	 * {@link IllegalStateException} on any operation until the session is closed, which publishes the chars put.
+	 * @param maxChars	chars reserved for the session
+	 * @throws	IllegalArgumentException
+	 *          If the <tt>maxChars</tt> is negative
+	 */
+	public final RollingCharBufferWriter openWriter(int maxChars) {
+		checkReleased();
+		if(maxChars < 0) {
+			throw new IllegalArgumentException("reserved chars of writer session must not be negative.");
+		}
+		if(maxChars > 0) { reserve(maxChars); }	// nothing to reserve for an empty session
+		RollingCharBufferWriter writer;
+		if(isArrayBacked()) {
+			writer = new RollingCharBufferWriter(this, backendArray(), 0, retCapacity(), putIndex, maxChars, false);
+		}else if(backendAddress() != 0) {
+			writer = new RollingCharBufferWriter(this, null, backendAddress(), retCapacity(), putIndex, maxChars, false);
+		}else {
+			char[] staging = maxChars <= scratch().length ? scratch() : new char[maxChars];
+			writer = new RollingCharBufferWriter(this, staging, 0, staging.length, 0, maxChars, true);
+		}
+		session = writer;
+		return writer;
+	}
+	
+	/** end the writer session, write the <code>staged</code> chars if any and advance the put index **/
+	final void closeWriter(char[] staged, int count) {
+		session = null;
+		if(staged != null) { write(staged, 0, count); }
+		putShifted(count);
+	}
+	
+	/** open a reader session over all the reserved chars, see {@link #openReader(int)} **/
+	public final RollingCharBufferReader openReader() {
+		return openReader(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * open a batch read session over at most <code>maxChars</code> reserved chars.
+	 * the buffer is validated once here, the take of the session doesn't check it again. this buffer throws a
+	 * {@link IllegalStateException} on any operation until the session is closed, which consumes the chars taken.
+	 * the session of a buffer not backed by array or memory offers 1024 chars at most, open another one for the rest.
+	 * @param maxChars	max chars of the session
+	 * @throws	IllegalArgumentException
+	 *          If the <tt>maxChars</tt> is negative
+	 */
+	public final RollingCharBufferReader openReader(int maxChars) {
+		checkReleased();
+		checkTakable();
+		if(maxChars < 0) {
+			throw new IllegalArgumentException("max chars of reader session must not be negative.");
+		}
+		int limit = Math.min(size, maxChars);
+		RollingCharBufferReader reader;
+		if(isArrayBacked()) {
+			reader = new RollingCharBufferReader(this, backendArray(), 0, retCapacity(), takeIndex, limit);
+		}else if(backendAddress() != 0) {
+			reader = new RollingCharBufferReader(this, null, backendAddress(), retCapacity(), takeIndex, limit);
+		}else {
+			char[] staging = scratch();
+			limit = Math.min(limit, staging.length);
+			read(0, staging, 0, limit);
+			reader = new RollingCharBufferReader(this, staging, 0, staging.length, 0, limit);
+		}
+		session = reader;
+		return reader;
+	}
+	
+	/** end the reader session and advance the take index over the chars taken **/
+	final void closeReader(int count) {
+		session = null;
+		takeShifted(count);
+	}
+	
+	/** start address of the memory backing this buffer, or 0 if the buffer isn't backed by memory **/
+	protected long backendAddress() { return 0; }
+	
+	/** if any cursor is open, the chars can't be taken from this buffer directly **/
+	private void checkTakable() {
+		if(cursors.length > 0) {
+			throw new IllegalStateException("buffer is taken by cursors.");
+		}
+	}
+
+	/**
+	 * maintain a polynomial rolling hash of the reserved chars from now on, see {@link #windowHash()}.
+	 * the hash is computed once over the reserved chars, then updated by each put and take in O(1) per char.
+	 */
+	public final void enableRollingHash() {
+		checkReleased();
+		if(hashing) { return; }
+		hash = hashOf(0, size);
+		hashPower = power(size);
+		hashing = true;
+	}
+	
+	/** stop maintaining the rolling hash **/
+	public final void disableRollingHash() {
+		checkReleased();
+		hashing = false;
+	}
+	
+	public final boolean isRollingHashEnabled() {
+		checkReleased();
+		return hashing;
+	}
+	
+	/**
+	 * polynomial hash of all reserved chars, equals <code>hashOf(0, size())</code>, in O(1).
+	 * if the rolling hash isn't {@link #enableRollingHash() enabled}, throw a {@link IllegalStateException}
+	 */
+	public final long windowHash() {
+		checkReleased();
+		if(!hashing) {
+			throw new IllegalStateException("rolling hash isn't enabled.");
+		}
+		return hash;
+	}
+	
+	/**
+	 * polynomial hash of <code>len</code> reserved chars started with <code>offset</code> chars after the take index,
+	 * the sum of <code>c[i] * B^(len-1-i)</code> modulo <code>2^64</code>, in O(len).
+	 * if the reserved chars started with <code>offset</code> has no <code>len</code> chars, throw a {@link IllegalStateException}
+	 */
+	public final long hashOf(int offset, int len) {
+		checkReleased();
+		if(offset < 0 || len < 0 || offset > size - len) {
+			throw new IllegalStateException("no specified size characters started with offset");
+		}
+		long h = 0;
+		char[] chars = scratch();
+		while(len > 0) {
+			int n = Math.min(len, chars.length);
+			read(offset, chars, 0, n);
+			for(int i = 0; i < n; i++) {
+				h = h * HASH_BASE + chars[i];
+			}
+			offset += n;
+			len -= n;
+		}
+		return h;
+	}
+	
+	/** fold <code>step</code> chars at <code>index</code> chars after the take index into the rolling hash, appended or removed **/
+	private void rollHash(int index, int step, boolean appended) {
+		if(step == 1) {
+			rollHash(read(index), appended);
+			return;
+		}
+		char[] chars = scratch();
+		while(step > 0) {
+			int n = Math.min(step, chars.length);
+			read(index, chars, 0, n);
+			for(int i = 0; i < n; i++) {
+				rollHash(chars[i], appended);
+			}
+			index += n;
+			step -= n;
+		}
+	}
+	
+	/** append <code>ch</code> to the end, or remove the first char <code>ch</code> **/
+	private void rollHash(char ch, boolean appended) {
+		if(appended) {
+			hash = hash * HASH_BASE + ch;
+			hashPower *= HASH_BASE;
+		}else {
+			hashPower *= HASH_BASE_INVERSE;
+			hash -= ch * hashPower;
+		}
+	}
+	
+	private static long power(int exponent) {
+		long result = 1, base = HASH_BASE;
+		for(; exponent > 0; exponent >>= 1) {
+			if((exponent & 1) != 0) { result *= base; }
+			base *= base;
+		}
+		return result;
+	}
+	
+	/** multiplicative inverse of the odd <code>x</code> modulo 2^64, by Newton's iteration **/
+	private static long inverse(long x) {
+		long inverse = x;	// correct to 3 bits, each iteration doubles them
+		for(int i = 0; i < 5; i++) {
+			inverse *= 2 - x * inverse;
+		}
+		return inverse;
+	}
+
 	/** Tells whether or not this buffer is backed by an accessible character array. **/
 	public final boolean hasArray() {
 		checkReleased();
@@ -274,12 +961,24 @@ public abstract class RollingCharBuffer {
 	/** if you don't read the chars or external read by the {@link #array()} returned array, so just shift the take index **/
 	public final void shiftTakeIndex(int step) {
 		checkReleased();
+		checkTakable();
 		if(step > size) {
 			throw new IllegalStateException("step exceed the max taken shifted steps");
 		}
-		takeIndex = (takeIndex + step) % capacity();
+		takeShifted(step);
+	}
+	
+	/** advance the take index over <code>step</code> taken chars **/
+	private void takeShifted(int step) {
+		if(hashing) { rollHash(0, step, false); }
+		discard(step);
+		takeIndex = advance(takeIndex, step, capacity());
 		size -= step;
+		takePosition += step;
 	}
+	
+	/** drop <code>step</code> chars the take index passed over, subclass not indexed by take index override it **/
+	protected void discard(int step) { }
 
 	/** if you external write by the {@link #array()} returned array, provided a interface to shift the put index.
 	 * you must confirm this operation after the external write operation, and the <code>step</code>
@@ -290,19 +989,43 @@ public abstract class RollingCharBuffer {
 		if(remained() < step) {
 			throw new IllegalStateException("step exceed the max put shifted steps");
 		}
-		putIndex = (putIndex + step) % capacity();
+		putShifted(step);
+	}
+	
+	/** advance the put index over <code>step</code> written chars **/
+	private void putShifted(int step) {
+		if(hashing) { rollHash(size, step, true); }
+		putIndex = advance(putIndex, step, capacity());
 		size += step;
 	}
+	
+	/** <code>(index + step) % capacity</code> without int overflow, for <code>index &lt; capacity</code> and <code>step &lt;= capacity</code> **/
+	private static int advance(int index, int step, int capacity) {
+		int next = index - capacity + step;
+		return next < 0 ? next + capacity : next;
+	}
 
 	/** 
 	 * help GC to release the internal resources. 
 	 * if you call this method, mark the release sign, then subsequent operation on this buffer
-	 * will throw a {@link IllegalStateException}
+	 * will throw a {@link IllegalStateException}. an open writer or reader session is abandoned,
+	 * the chars put by a writer are dropped.
 	 */
 	public final void release() {
+		if(session instanceof RollingCharBufferWriter) {
+			((RollingCharBufferWriter) session).abandon();
+		}else if(session instanceof RollingCharBufferReader) {
+			((RollingCharBufferReader) session).abandon();
+		}
+		session = null;
 		if(!isReleased) {
 			clean();
+			utf8 = null;
+			scratch = null;
 			isReleased = true;
+			for(RollingCharBufferCursor cursor : cursors) {
+				cursor.close();
+			}
 		}
 	}
 	
@@ -311,6 +1034,9 @@ public abstract class RollingCharBuffer {
 		if(isReleased) {
 			throw new IllegalStateException("buffer has been released.");
 		}
+		if(session != null) {
+			throw new IllegalStateException("buffer is in a writer or reader session.");
+		}
 	}
 	
 	/** subclass implement this method to clean their own resources **/
@@ -0,0 +1,130 @@
+package com.lee.buffer;
+
+/**
+ * An independent read cursor of a multicast rolling char buffer, opened by {@link RollingCharBuffer#openCursor()}.
+ * <p> Every cursor reads the same chars put by the single writer. The buffer reclaims the space only
+ * after the slowest cursor has passed it, a slow cursor can be opened with a {@link Policy} to be
+ * detached or lapped instead of expanding the buffer.
+ * <p> Non thread safe, the same as the buffer.
+ */
+public final class RollingCharBufferCursor {
+
+	/** what happens to a slow cursor when the writer runs out of space **/
+	public static enum Policy {
+		/** expand the buffer, the cursor never loses a char **/
+		EXPAND,
+		/** detach the cursor, subsequent operation on it will throw a {@link IllegalStateException} **/
+		DETACH,
+		/** advance the cursor over the oldest chars, they are counted by {@link RollingCharBufferCursor#lapped()} **/
+		LAP
+	}
+
+	private final RollingCharBuffer buffer;
+	private final Policy policy;
+	long position;				// logical position of next take, counted from the first char put
+	private long lapped;		// chars skipped by the writer lapping this cursor
+	private boolean detached;
+
+	RollingCharBufferCursor(RollingCharBuffer buffer, Policy policy, long position) {
+		this.buffer = buffer;
+		this.policy = policy;
+		this.position = position;
+	}
+
+	public Policy policy() { return policy; }
+
+	/** chars not yet taken by this cursor **/
+	public int size() {
+		checkDetached();
+		return (int) (buffer.putPosition() - position);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/** read one char. if the cursor has no char to take, throw a {@link IllegalStateException} **/
+	public char take() {
+		if(size() < 1) {
+			throw new IllegalStateException("no character can be taken");
+		}
+		char ch = buffer.read(index());
+		shifted(1);
+		return ch;
+	}
+
+	/** read <code>size</code> chars. if the cursor has less chars than <code>size</code>, throw a {@link IllegalStateException} **/
+	public char[] take(int size) {
+		if(size < 1 || size > size()) {
+			throw new IllegalStateException("taken size less than 1 or more characters taken than the cursor size");
+		}
+		char[] tmp = new char[size];
+		buffer.read(index(), tmp, 0, size);
+		shifted(size);
+		return tmp;
+	}
+
+	/**
+	 * read <code>size</code> chars to <code>arr</code> started with <code>offset</code>.
+	 * if the cursor has less chars than <code>size</code> or <code>arr</code> started with
+	 * <code>offset</code> has no enough space, throw a {@link IllegalStateException}
+	 */
+	public void take(char[] arr, int offset, int size) {
+		if(arr == null || offset < 0 || (arr.length - offset) < size) {
+			throw new IllegalStateException("no enough array space to place the required characters");
+		}
+		if(size < 1 || size > size()) {
+			throw new IllegalStateException("taken size less than 1 or more characters taken than the cursor size");
+		}
+		buffer.read(index(), arr, offset, size);
+		shifted(size);
+	}
+
+	/** skip <code>step</code> chars without reading them **/
+	public void shift(int step) {
+		if(step < 0 || step > size()) {
+			throw new IllegalStateException("step exceed the max taken shifted steps");
+		}
+		shifted(step);
+	}
+
+	/** total chars skipped because the writer lapped this cursor **/
+	public long lapped() { return lapped; }
+
+	public boolean isDetached() { return detached; }
+
+	/** unregister this cursor, the buffer doesn't keep chars for it any more **/
+	public void close() {
+		if(!detached) {
+			detached = true;
+			buffer.removeCursor(this);
+		}
+	}
+
+	/** chars from the buffer's take index to this cursor **/
+	private int index() {
+		return (int) (position - buffer.takePosition());
+	}
+
+	private void shifted(int step) {
+		boolean slowest = position == buffer.takePosition();
+		position += step;
+		if(slowest) { buffer.reclaim(); }
+	}
+
+	/** the writer needs the chars before <code>position</code>, apply the policy **/
+	void overrun(long position) {
+		if(policy == Policy.LAP) {
+			lapped += position - this.position;
+			this.position = position;
+		}else if(policy == Policy.DETACH) {
+			detached = true;
+		}
+	}
+
+	private void checkDetached() {
+		if(detached) {
+			throw new IllegalStateException("cursor has been detached.");
+		}
+	}
+}
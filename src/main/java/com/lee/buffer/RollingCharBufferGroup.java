@@ -0,0 +1,203 @@
+package com.lee.buffer;
+
+import static com.lee.util.PlatformDependent.*;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.lee.buffer.RollingDirectCharBuffer.MemoryBlock;
+
+import sun.misc.Cleaner;
+
+/**
+ * A group of rolling direct char buffers whose memory is carved from large pre-allocated slabs.
+ * <p> The blocks are handed out in power-of-two size classes, a block returned by a buffer's
+ * growth or {@link RollingCharBuffer#release() release} is recycled for the next buffer of the
+ * same size class. Buffers larger than a slab get their own memory. A buffer's capacity is
+ * rounded up to its size class, so it grows only when the block is full.
+ * <p> {@link #close()} stops allocating new buffers, the memory is freed in one shot once every
+ * buffer allocated from the group has been released, so a buffer still in use by another thread
+ * never touches freed memory.
+ * <p> The group is thread safe, the buffers allocated from it are not.
+ */
+public final class RollingCharBufferGroup implements Closeable {
+
+	private static final int MIN_BLOCK_SHIFT = 4;	// smallest size class, 16 chars
+
+	private final int slabCapacity;		// capacity of each slab, also the largest size class, in chars
+	private final Slabs slabs;			// all memory owned by this group
+	private final Cleaner cleaner;		// finalize Cleaner free the slabs to prevent memory leak
+	private long slabAddress;			// start address of current carved slab
+	private int slabOffset;				// next free offset of current carved slab, in chars
+	private final long[][] freeBlocks;	// recycled block addresses of each size class
+	private final int[] freeCounts;
+	private int blocks;					// blocks handed out and not yet returned
+	private boolean closed;
+
+	/**
+	 * Create a buffer group.
+	 * @param slabCapacity	capacity of each slab, rounded up to a power of two, in chars
+	 * @throws	IllegalArgumentException
+     *          If the <tt>slabCapacity</tt> isn't a positive integer
+	 */
+	public RollingCharBufferGroup(int slabCapacity) {
+		if(slabCapacity < 1 || slabCapacity > (1 << 30)) {
+			throw new IllegalArgumentException("slab's capacity must be a positive integer not more than 2^30.");
+		}
+		int shift = Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(slabCapacity - 1));
+		this.slabCapacity = 1 << shift;
+		int classes = shift - MIN_BLOCK_SHIFT + 1;
+		freeBlocks = new long[classes][];
+		freeCounts = new int[classes];
+		for(int i = 0; i < classes; i++) {
+			freeBlocks[i] = new long[8];
+		}
+		slabs = new Slabs();
+		cleaner = Cleaner.create(this, slabs);
+		slabOffset = this.slabCapacity;	// no slab carved yet
+	}
+
+	/**
+	 * Allocate a rolling char buffer with <code>capacity</code> size from this group.
+	 * if the platform doesn't support direct memory, allocate it from JVM Heap.
+	 * @param capacity	buffer's capacity, in chars, rounded up to its size class
+	 * @return	a rolling char buffer
+	 * @throws	IllegalArgumentException
+     *          If the <tt>capacity</tt> isn't a positive integer
+	 * @throws	IllegalStateException
+	 * 			If the group has been closed
+	 */
+	public RollingCharBuffer allocate(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("buffer's capacity must be a positive integer.");
+		}
+		if(hasUnsafe()) {
+			return new RollingDirectCharBuffer(capacity, this);	// closed group is checked on carving the block
+		}
+		synchronized(this) {
+			checkClosed();
+		}
+		return new RollingHeapCharBuffer(capacity);
+	}
+
+	/** capacity of each slab, in chars **/
+	public int slabCapacity() { return slabCapacity; }
+
+	public synchronized boolean isClosed() { return closed; }
+
+	/**
+	 * stop allocating new buffers, and free all slabs once every buffer allocated from this group
+	 * has been released. the buffers not yet released can still be used until then.
+	 */
+	@Override
+	public synchronized void close() {
+		if(!closed) {
+			closed = true;
+			if(blocks == 0) { cleaner.clean(); }
+		}
+	}
+
+	/**
+	 * carve a block holding at least <code>capacity</code> chars for a new buffer, or for the growth of
+	 * a buffer holding a block. a closed group still serves the growth of its buffers.
+	 */
+	synchronized MemoryBlock allocateBlock(int capacity, boolean newBuffer) {
+		if(newBuffer) { checkClosed(); }
+		blocks++;
+		if(capacity > slabCapacity) {
+			long address = allocateMemory(capacity);
+			slabs.huges.add(address);
+			return new MemoryBlock(address, capacity);
+		}
+
+		int index = sizeClass(capacity);
+		int blockSize = 1 << (index + MIN_BLOCK_SHIFT);
+		if(freeCounts[index] > 0) {
+			return new MemoryBlock(freeBlocks[index][--freeCounts[index]], blockSize);
+		}
+		if(slabCapacity - slabOffset < blockSize) {
+			recycleSlabTail();
+			slabAddress = slabs.add(allocateMemory(slabCapacity));
+			slabOffset = 0;
+		}
+		long address = offsetAddress(slabAddress, slabOffset);
+		slabOffset += blockSize;
+		return new MemoryBlock(address, blockSize);
+	}
+
+	/** recycle a block carved by {@link #allocateBlock(int, boolean)}, free all slabs if it is the last block of a closed group **/
+	synchronized void deallocateBlock(MemoryBlock block) {
+		if(block == null) { return; }
+		blocks--;
+		if(closed) {
+			if(blocks == 0) { cleaner.clean(); }
+			return;
+		}
+		if(block.capacity > slabCapacity) {
+			slabs.huges.remove(block.address);
+			freeMemory(block.address);
+		}else {
+			recycle(sizeClass(block.capacity), block.address);
+		}
+	}
+
+	/** split the unused tail of current slab into the smaller size classes **/
+	private void recycleSlabTail() {
+		for(int index = freeCounts.length - 1; index >= 0; index--) {
+			int blockSize = 1 << (index + MIN_BLOCK_SHIFT);
+			while(slabCapacity - slabOffset >= blockSize) {
+				recycle(index, offsetAddress(slabAddress, slabOffset));
+				slabOffset += blockSize;
+			}
+		}
+	}
+
+	private void recycle(int index, long address) {
+		long[] free = freeBlocks[index];
+		if(freeCounts[index] == free.length) {
+			free = freeBlocks[index] = Arrays.copyOf(free, free.length * 2);
+		}
+		free[freeCounts[index]++] = address;
+	}
+
+	/** index of the smallest size class holding <code>capacity</code> chars **/
+	private static int sizeClass(int capacity) {
+		int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		return Math.max(0, shift - MIN_BLOCK_SHIFT);
+	}
+
+	private void checkClosed() {
+		if(closed) {
+			throw new IllegalStateException("buffer group has been closed.");
+		}
+	}
+
+	/** all memory owned by a group, freed together **/
+	private static class Slabs implements Runnable {
+		private long[] addresses = new long[4];
+		private int count;
+		private final Set<Long> huges = new HashSet<Long>();	// blocks larger than a slab
+
+		long add(long address) {
+			if(count == addresses.length) {
+				addresses = Arrays.copyOf(addresses, count * 2);
+			}
+			addresses[count++] = address;
+			return address;
+		}
+
+		public void run() {
+			for(int i = 0; i < count; i++) {
+				freeMemory(addresses[i]);
+			}
+			count = 0;
+			for(long address : huges) {
+				freeMemory(address);
+			}
+			huges.clear();
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.lee.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A background thread keeping a rolling char buffer topped up from a file or a channel.
+ * <p> The thread reads <code>readSize</code> bytes at a time, decodes them and puts the chars into the buffer
+ * until it holds <code>highWater</code> chars, so the I/O overlaps with the consumer's parsing.
+ * The consumer takes the chars by this prefetcher, the end of input is returned as <code>-1</code>,
+ * and any error of the thread is thrown wrapped in an {@link IOException} by the take after the chars
+ * read before it. UTF-8 input is decoded by {@link RollingCharBuffer#putUtf8(ByteBuffer, boolean)}.
+ * <p> The buffer is owned by the prefetcher while it is running, it shouldn't be accessed by others.
+ */
+public final class RollingCharBufferPrefetcher implements Closeable {
+
+	private final RollingCharBuffer buffer;
+	private final ReadableByteChannel channel;
+	private final CharsetDecoder decoder;	// null for UTF-8
+	private final int highWater;			// buffer size the thread stops reading at
+	private final int readSize;				// bytes read from channel at a time
+	private final Thread thread;
+	private boolean eof;
+	private Throwable error;			// failure of the thread, thrown to the consumer
+	private volatile boolean closed;
+
+	private RollingCharBufferPrefetcher(RollingCharBuffer buffer, ReadableByteChannel channel, Charset charset,
+										int highWater, int readSize) {
+		if(buffer == null || channel == null || charset == null) {
+			throw new IllegalArgumentException("buffer, channel and charset must not be null.");
+		}
+		if(highWater < 1 || readSize < 1) {
+			throw new IllegalArgumentException("high water and read size must be positive integers.");
+		}
+		this.buffer = buffer;
+		this.channel = channel;
+		this.decoder = StandardCharsets.UTF_8.equals(charset) ? null : charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.highWater = highWater;
+		this.readSize = readSize;
+		thread = new Thread(new Runnable() {
+			public void run() { prefetch(); }
+		}, "rolling-char-buffer-prefetcher");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Attach a prefetcher reading <code>path</code> to <code>buffer</code>, and start it.
+	 * @param buffer	buffer filled by the prefetcher
+	 * @param path		file to read
+	 * @param charset	charset of the file
+	 * @param highWater	buffer size the prefetcher stops reading at, in chars
+	 * @param readSize	bytes read from file at a time
+	 * @return	a running prefetcher
+	 * @throws	IOException
+	 * 			If the file can't be opened
+	 */
+	public static RollingCharBufferPrefetcher attach(RollingCharBuffer buffer, Path path, Charset charset,
+													 int highWater, int readSize) throws IOException {
+		return attach(buffer, FileChannel.open(path, StandardOpenOption.READ), charset, highWater, readSize);
+	}
+
+	/**
+	 * Attach a prefetcher reading <code>channel</code> to <code>buffer</code>, and start it.
+	 * the channel is closed by the prefetcher on the end of input, error or {@link #close()}.
+	 * @param buffer	buffer filled by the prefetcher
+	 * @param channel	channel to read
+	 * @param charset	charset of the channel's bytes
+	 * @param highWater	buffer size the prefetcher stops reading at, in chars
+	 * @param readSize	bytes read from channel at a time
+	 * @return	a running prefetcher
+	 */
+	public static RollingCharBufferPrefetcher attach(RollingCharBuffer buffer, ReadableByteChannel channel, Charset charset,
+													 int highWater, int readSize) {
+		RollingCharBufferPrefetcher prefetcher = new RollingCharBufferPrefetcher(buffer, channel, charset, highWater, readSize);
+		prefetcher.thread.start();
+		return prefetcher;
+	}
+
+	/** read one char, blocking until it is prefetched. return <code>-1</code> on the end of input **/
+	public int take() throws IOException {
+		synchronized(this) {
+			if(!await()) { return -1; }
+			char ch = buffer.take();
+			notifyAll();
+			return ch;
+		}
+	}
+
+	/**
+	 * read at most <code>size</code> chars to <code>arr</code> started with <code>offset</code>, blocking until
+	 * any char is prefetched. return the number of chars read, or <code>-1</code> on the end of input
+	 */
+	public int take(char[] arr, int offset, int size) throws IOException {
+		if(arr == null || offset < 0 || size < 0 || (arr.length - offset) < size) {
+			throw new IllegalStateException("no enough array space to place the required characters");
+		}
+		if(size == 0) { return 0; }
+		synchronized(this) {
+			if(!await()) { return -1; }
+			int len = Math.min(size, buffer.size());
+			buffer.take(arr, offset, len);
+			notifyAll();
+			return len;
+		}
+	}
+
+	/** chars prefetched and not yet taken **/
+	public synchronized int available() {
+		return buffer.size();
+	}
+
+	/** wait until any char is prefetched, return false on the end of input, throw the error of the thread **/
+	private boolean await() throws IOException {
+		try {
+			while(buffer.isEmpty() && !eof && error == null && !closed) {
+				wait();
+			}
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for prefetched characters");
+		}
+		if(!buffer.isEmpty()) { return true; }
+		if(error != null) {
+			throw new IOException("prefetch failed", error);
+		}
+		if(closed) {
+			throw new IllegalStateException("prefetcher has been closed.");
+		}
+		return false;
+	}
+
+	/** stop the thread and close the channel, the prefetched chars stay in the buffer **/
+	@Override
+	public void close() {
+		closed = true;
+		thread.interrupt();
+		synchronized(this) {
+			notifyAll();
+		}
+	}
+
+	/** thread loop, read and decode until the end of input, error or close **/
+	private void prefetch() {
+		ByteBuffer bytes = ByteBuffer.allocate(readSize);
+		CharBuffer chars = decoder == null ? null : CharBuffer.allocate((int) Math.ceil(readSize * (double) decoder.maxCharsPerByte()) + 1);
+		try {
+			boolean end = false;
+			while(!end && !closed) {
+				synchronized(this) {
+					while(buffer.size() >= highWater && !closed) {
+						wait();
+					}
+				}
+				if(closed) { break; }
+
+				end = channel.read(bytes) < 0;
+				bytes.flip();
+				synchronized(this) {
+					if(decoder == null) {
+						buffer.putUtf8(bytes, end);
+					}else {
+						decoder.decode(bytes, chars, end);
+						if(end) { decoder.flush(chars); }
+						chars.flip();
+						buffer.put(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+						chars.clear();
+					}
+					eof = end;
+					notifyAll();
+				}
+				bytes.compact();
+			}
+		}catch(InterruptedException e) {
+			// closed
+		}catch(Throwable e) {
+			// any failure ends the input, or the consumer would wait forever
+			synchronized(this) {
+				if(!closed) { error = e; }	// interrupted I/O of close isn't an error
+				notifyAll();
+			}
+		}finally {
+			try {
+				channel.close();
+			}catch(IOException e) {
+				// ignore, nothing more to read
+			}
+		}
+	}
+
+}
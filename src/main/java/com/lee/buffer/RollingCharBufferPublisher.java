@@ -0,0 +1,217 @@
+package com.lee.buffer;
+
+import java.nio.CharBuffer;
+
+import com.lee.util.Flow.Publisher;
+import com.lee.util.Flow.Subscriber;
+import com.lee.util.Flow.Subscription;
+
+/**
+ * A publisher emitting the chars put into a rolling char buffer, only as the subscriber requests them.
+ * <p> The producer side {@link #put(CharSequence...) puts} chars into the buffer, each <code>onNext</code>
+ * batches all the available chars (up to <code>maxChunk</code>) into one {@link CharBuffer}. When there
+ * is no demand and the buffer reaches <code>limit</code> chars, <code>put</code> returns false to signal
+ * the producer to pause, the producer may {@link #awaitResume() wait} for the demand then.
+ * <p> The publisher is thread safe and accepts one subscriber only. The buffer is owned by the publisher,
+ * it shouldn't be accessed by others.
+ */
+public final class RollingCharBufferPublisher implements Publisher<CharSequence> {
+
+	private final RollingCharBuffer buffer;
+	private final int limit;		// size the producer is signalled to pause at, while no demand
+	private final int maxChunk;		// max chars emitted by one onNext
+	private Subscriber<? super CharSequence> subscriber;
+	private Subscription subscription;	// subscription of the accepted subscriber
+	private long demand;
+	private boolean completed;		// no more chars put by producer
+	private Throwable error;		// error signalled by producer
+	private boolean terminated;		// onComplete or onError invoked
+	private boolean cancelled;
+	private boolean emitting;		// a thread is invoking the subscriber
+
+	/**
+	 * @param buffer	buffer owned by this publisher
+	 * @param limit		size the producer is signalled to pause at, while no demand
+	 * @param maxChunk	max chars emitted by one <code>onNext</code>
+	 * @throws	IllegalArgumentException
+     *          If the <tt>limit</tt> or <tt>maxChunk</tt> isn't a positive integer
+	 */
+	public RollingCharBufferPublisher(RollingCharBuffer buffer, int limit, int maxChunk) {
+		if(buffer == null) {
+			throw new IllegalArgumentException("buffer is null.");
+		}
+		if(limit < 1 || maxChunk < 1) {
+			throw new IllegalArgumentException("limit and max chunk must be positive integers.");
+		}
+		this.buffer = buffer;
+		this.limit = limit;
+		this.maxChunk = maxChunk;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super CharSequence> subscriber) {
+		if(subscriber == null) {
+			throw new NullPointerException("subscriber is null");
+		}
+		Subscription subscription = new BufferSubscription();
+		boolean accepted;
+		synchronized(this) {
+			accepted = this.subscriber == null;
+			if(accepted) {
+				this.subscriber = subscriber;
+				this.subscription = subscription;
+				emitting = true;	// nothing emitted before onSubscribe returns
+			}
+		}
+		subscriber.onSubscribe(subscription);
+		if(accepted) {
+			emit();
+		}else {
+			subscriber.onError(new IllegalStateException("publisher accepts one subscriber only"));
+		}
+	}
+
+	/** put chars of <code>arr</code> started with <code>offset</code>, return false if producer should pause **/
+	public boolean put(char[] arr, int offset, int size) {
+		synchronized(this) {
+			checkPuttable();
+			buffer.put(arr, offset, size);
+		}
+		drain();
+		return !isPaused();
+	}
+
+	/** put chars of <code>parts</code>, return false if producer should pause **/
+	public boolean put(CharSequence... parts) {
+		synchronized(this) {
+			checkPuttable();
+			buffer.put(parts);
+		}
+		drain();
+		return !isPaused();
+	}
+
+	/** whether the buffer reached the limit without demand, or the subscription was cancelled **/
+	public synchronized boolean isPaused() {
+		return cancelled || (demand == 0 && buffer.size() >= limit);
+	}
+
+	/**
+	 * block the producer while it is {@link #isPaused() paused}, return false if the subscription
+	 * was cancelled or the publisher was terminated by an error or completion
+	 */
+	public synchronized boolean awaitResume() throws InterruptedException {
+		while(isPaused() && !isStopped()) {
+			wait();
+		}
+		return !isStopped();
+	}
+	
+	/** whether no more chars will be emitted **/
+	private boolean isStopped() {
+		return cancelled || terminated || error != null;
+	}
+
+	/** no more chars put, the subscriber is completed after all buffered chars are emitted **/
+	public void complete() {
+		synchronized(this) {
+			completed = true;
+		}
+		drain();
+	}
+
+	/** signal <code>error</code> to the subscriber, the buffered chars are dropped **/
+	public void error(Throwable error) {
+		synchronized(this) {
+			if(completed || this.error != null) { return; }
+			this.error = error;
+			buffer.reset();
+			notifyAll();
+		}
+		drain();
+	}
+
+	private void checkPuttable() {
+		if(completed || error != null) {
+			throw new IllegalStateException("publisher has been completed.");
+		}
+		if(cancelled) {
+			throw new IllegalStateException("subscription has been cancelled.");
+		}
+	}
+
+	/** emit chunks while there is demand, one thread invokes the subscriber at a time, outside the lock **/
+	private void drain() {
+		synchronized(this) {
+			if(emitting) { return; }	// the emitting thread re-checks the state before it stops
+			emitting = true;
+		}
+		emit();
+	}
+
+	/** emit loop of the thread holding the {@link #emitting} mark **/
+	private void emit() {
+		for(;;) {
+			Subscriber<? super CharSequence> s;
+			CharSequence chunk = null;
+			Throwable failure = null;
+			synchronized(this) {
+				s = subscriber;
+				if(s == null || cancelled || terminated) {
+					emitting = false;
+					return;
+				}
+				if(error != null) {
+					terminated = true;
+					failure = error;
+				}else if(demand > 0 && !buffer.isEmpty()) {
+					chunk = CharBuffer.wrap(buffer.take(Math.min(buffer.size(), maxChunk)));
+					demand--;
+					notifyAll();	// the buffer shrank
+				}else if(completed && buffer.isEmpty()) {
+					terminated = true;
+					notifyAll();
+				}else {
+					emitting = false;
+					return;
+				}
+			}
+			if(chunk != null) {
+				s.onNext(chunk);
+			}else if(failure != null) {
+				s.onError(failure);
+			}else {
+				s.onComplete();
+			}
+		}
+	}
+
+	private class BufferSubscription implements Subscription {
+
+		@Override
+		public void request(long n) {
+			synchronized(RollingCharBufferPublisher.this) {
+				if(subscription != this || terminated) { return; }
+				if(n <= 0) {
+					error = new IllegalArgumentException("non-positive request: " + n);
+					buffer.reset();
+				}else {
+					demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+				}
+				RollingCharBufferPublisher.this.notifyAll();
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized(RollingCharBufferPublisher.this) {
+				if(subscription != this || cancelled) { return; }
+				cancelled = true;
+				buffer.reset();
+				RollingCharBufferPublisher.this.notifyAll();
+			}
+		}
+	}
+
+}
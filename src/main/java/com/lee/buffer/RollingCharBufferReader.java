@@ -0,0 +1,106 @@
+package com.lee.buffer;
+
+import static com.lee.util.PlatformDependent.readCharUnchecked;
+import static com.lee.util.PlatformDependent.readChars;
+
+import java.io.Closeable;
+
+/**
+ * A batch read session of a rolling char buffer, opened by {@link RollingCharBuffer#openReader(int)}.
+ * <p> The buffer is validated and the chars of the session are counted once on opening, so a
+ * {@link #take()} is a bound check, a load and an index wrap only, the JIT can inline it into a tight loop.
+ * The chars taken are consumed from the buffer by {@link #close()}, the buffer throws a {@link IllegalStateException}
+ * on any operation until then, except {@link RollingCharBuffer#release() release} which abandons the session.
+ * <p> A buffer backed by array or memory is read in place, others are staged in an array on opening.
+ * Non thread safe, the same as the buffer.
+ */
+public final class RollingCharBufferReader implements Closeable {
+
+	private final RollingCharBuffer buffer;
+	private final char[] array;		// backend array or staging array, null for memory
+	private final long address;		// backend memory address if array is null
+	private final int capacity;		// index wraps to 0 at capacity
+	private int index;				// next take index
+	private int count;				// chars taken
+	private int limit;				// chars can be taken
+	private boolean closed;
+
+	RollingCharBufferReader(RollingCharBuffer buffer, char[] array, long address, int capacity, int index, int limit) {
+		this.buffer = buffer;
+		this.array = array;
+		this.address = address;
+		this.capacity = capacity;
+		this.index = index;
+		this.limit = limit;
+	}
+
+	/** read one char. if no char is left or the session is closed, throw a {@link IllegalStateException} **/
+	public char take() {
+		if(count == limit) {
+			throw new IllegalStateException(closed ? "reader session has been closed." : "no character left in reader session");
+		}
+		char ch = array != null ? array[index] : readCharUnchecked(address, index);
+		if(++index == capacity) { index = 0; }
+		count++;
+		return ch;
+	}
+
+	/** read the next char without taking it. if no char is left or the session is closed, throw a {@link IllegalStateException} **/
+	public char peek() {
+		if(count == limit) {
+			throw new IllegalStateException(closed ? "reader session has been closed." : "no character left in reader session");
+		}
+		return array != null ? array[index] : readCharUnchecked(address, index);
+	}
+
+	/**
+	 * read <code>size</code> chars to <code>arr</code> started with <code>offset</code>.
+	 * if the session has less chars than <code>size</code> or <code>arr</code> started with
+	 * <code>offset</code> has no enough space, throw a {@link IllegalStateException}
+	 */
+	public void take(char[] arr, int offset, int size) {
+		if(arr == null || offset < 0 || size < 0 || (arr.length - offset) < size) {
+			throw new IllegalStateException("no enough array space to place the required characters");
+		}
+		if(size > limit - count) {
+			throw new IllegalStateException(closed ? "reader session has been closed." : "no character left in reader session");
+		}
+		int tailLen = Math.min(size, capacity - index);
+		if(array != null) {
+			System.arraycopy(array, index, arr, offset, tailLen);
+			System.arraycopy(array, 0, arr, offset+tailLen, size-tailLen);
+		}else {
+			readChars(address, index, arr, offset, offset+tailLen);
+			readChars(address, 0, arr, offset+tailLen, offset+size);
+		}
+		index = tailLen < size ? size - tailLen : index + size;
+		if(index == capacity) { index = 0; }
+		count += size;
+	}
+
+	/** chars can be taken before the session runs out **/
+	public int available() {
+		return limit - count;
+	}
+
+	/** chars taken by this session **/
+	public int count() {
+		return count;
+	}
+
+	/** consume the chars taken from the buffer and end the session, subsequent take will throw a {@link IllegalStateException} **/
+	@Override
+	public void close() {
+		if(closed) { return; }
+		closed = true;
+		limit = count;	// no char left for subsequent take
+		buffer.closeReader(count);
+	}
+
+	/** end the session without consuming, the buffer is being released **/
+	void abandon() {
+		closed = true;
+		limit = count;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.lee.buffer;
+
+import static com.lee.util.PlatformDependent.writeCharUnchecked;
+import static com.lee.util.PlatformDependent.writeChars;
+
+import java.io.Closeable;
+
+/**
+ * A batch write session of a rolling char buffer, opened by {@link RollingCharBuffer#openWriter(int)}.
+ * <p> The buffer is validated and the space of the session is reserved once on opening, so a
+ * {@link #put(char)} is a bound check, a store and an index wrap only, the JIT can inline it into a tight loop.
+ * The chars are published to the buffer by {@link #close()}, the buffer throws a {@link IllegalStateException}
+ * on any operation until then, except {@link RollingCharBuffer#release() release} which abandons the session.
+ * <p> A buffer backed by array or memory is written in place, others are staged in an array and written on close.
+ * Non thread safe, the same as the buffer.
+ */
+public final class RollingCharBufferWriter implements Closeable {
+
+	private final RollingCharBuffer buffer;
+	private final char[] array;		// backend array or staging array, null for memory
+	private final long address;		// backend memory address if array is null
+	private final int capacity;		// index wraps to 0 at capacity
+	private final boolean staged;	// chars are written to the buffer on close
+	private int index;				// next put index
+	private int count;				// chars put
+	private int limit;				// chars reserved
+	private boolean closed;
+
+	RollingCharBufferWriter(RollingCharBuffer buffer, char[] array, long address, int capacity, int index, int limit, boolean staged) {
+		this.buffer = buffer;
+		this.array = array;
+		this.address = address;
+		this.capacity = capacity;
+		this.index = index;
+		this.limit = limit;
+		this.staged = staged;
+	}
+
+	/** write one char. if the reserved space is used up or the session is closed, throw a {@link IllegalStateException} **/
+	public void put(char ch) {
+		if(count == limit) {
+			throw new IllegalStateException(closed ? "writer session has been closed." : "no reserved space left in writer session");
+		}
+		if(array != null) {
+			array[index] = ch;
+		}else {
+			writeCharUnchecked(address, index, ch);
+		}
+		if(++index == capacity) { index = 0; }
+		count++;
+	}
+
+	/**
+	 * write <code>size</code> chars from <code>arr</code> started with <code>offset</code>.
+	 * if <code>arr</code> started with <code>offset</code> has no specified <code>size</code>
+	 * characters or the reserved space is less than <code>size</code>, throw a {@link IllegalStateException}
+	 */
+	public void put(char[] arr, int offset, int size) {
+		if(arr == null || offset < 0 || size < 0 || (arr.length - offset) < size) {
+			throw new IllegalStateException("array started with offset has no specified size characters");
+		}
+		if(size > limit - count) {
+			throw new IllegalStateException(closed ? "writer session has been closed." : "no reserved space left in writer session");
+		}
+		int tailLen = Math.min(size, capacity - index);
+		if(array != null) {
+			System.arraycopy(arr, offset, array, index, tailLen);
+			System.arraycopy(arr, offset+tailLen, array, 0, size-tailLen);
+		}else {
+			writeChars(address, index, arr, offset, offset+tailLen);
+			writeChars(address, 0, arr, offset+tailLen, offset+size);
+		}
+		index = tailLen < size ? size - tailLen : index + size;
+		if(index == capacity) { index = 0; }
+		count += size;
+	}
+
+	/** chars can be put before the reserved space is used up **/
+	public int remaining() {
+		return limit - count;
+	}
+
+	/** chars put by this session **/
+	public int count() {
+		return count;
+	}
+
+	/** publish the chars put to the buffer and end the session, subsequent put will throw a {@link IllegalStateException} **/
+	@Override
+	public void close() {
+		if(closed) { return; }
+		closed = true;
+		limit = count;	// no space left for subsequent put
+		buffer.closeWriter(staged ? array : null, count);
+	}
+
+	/** end the session without publishing, the buffer is being released **/
+	void abandon() {
+		closed = true;
+		limit = count;
+	}
+
+}
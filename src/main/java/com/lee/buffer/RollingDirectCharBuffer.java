@@ -8,11 +8,29 @@ class RollingDirectCharBuffer extends RollingCharBuffer {
 
 	private MemoryBlock block;	// memory block to store characters
 	private int capacity;		// capacity, in chars
+	private final RollingCharBufferGroup group;	// group the memory carved from, null if allocated alone
 	
 	RollingDirectCharBuffer(int capacity) {
+		this(capacity, null);
+	}
+	
+	RollingDirectCharBuffer(int capacity, RollingCharBufferGroup group) {
 		super();
-		block = MemoryBlock.allocate(capacity);
-		this.capacity = capacity;
+		this.group = group;
+		block = allocateBlock(capacity, true);
+		this.capacity = block.capacity;	// a group block is rounded up to its size class
+	}
+	
+	private MemoryBlock allocateBlock(int capacity, boolean newBuffer) {
+		return group == null ? MemoryBlock.allocate(capacity) : group.allocateBlock(capacity, newBuffer);
+	}
+	
+	private void deallocateBlock(MemoryBlock block) {
+		if(group == null) {
+			MemoryBlock.deallocate(block);
+		}else {
+			group.deallocateBlock(block);
+		}
 	}
 
 	@Override
@@ -22,35 +40,56 @@ class RollingDirectCharBuffer extends RollingCharBuffer {
 	protected void ensureCapacity(int incCap) {
 		if(incCap < remained()) { return; }
 		
-		int newCapacity = 0;
-		if(2*incCap <= capacity) {
-			newCapacity = capacity * 3 / 2 + 1;
-		}else {
-			newCapacity = capacity * 2;
+		int newCapacity = newCapacity(incCap);
+		if(group == null) {
+			reallocate(newCapacity);
+			return;
 		}
 		
-		MemoryBlock newBlock = MemoryBlock.allocate(newCapacity);
+		MemoryBlock newBlock = allocateBlock(newCapacity, false);
 		if(size > 0) {
 			long oldAddress = block.address;
 			long newAddress = newBlock.address;
 			if(putIndex > takeIndex) {
-				copyMemory(oldAddress, takeIndex, newAddress, 0, size);
+				copyChars(oldAddress, takeIndex, newAddress, 0, size);
 			}else {
 				int len = capacity - takeIndex;
-				copyMemory(oldAddress, takeIndex, newAddress, 0, len);
+				copyChars(oldAddress, takeIndex, newAddress, 0, len);
 				if(size > len) {
-					copyMemory(oldAddress, 0, newAddress, len, putIndex);
+					copyChars(oldAddress, 0, newAddress, len, putIndex);
 				}
 			}
 		}
 		
-		MemoryBlock.deallocate(block);	// clean old memory
+		deallocateBlock(block);	// clean old memory
 		block = newBlock;
-		capacity = newCapacity;
+		capacity = newBlock.capacity;
 		takeIndex = 0;
 		putIndex = size;
 	}
 
+	/** expand the block by realloc, in place if possible, only the shorter wrapped part of content is moved **/
+	private void reallocate(int newCapacity) {
+		int tailLen = capacity - takeIndex;		// chars from take index to the old end
+		block = MemoryBlock.reallocate(block, newCapacity);
+		long address = block.address;
+		if(size == 0) {
+			takeIndex = putIndex = 0;
+		}else if(size <= tailLen) {
+			putIndex = takeIndex + size;	// contiguous, nothing moved
+		}else if(putIndex <= tailLen && putIndex <= newCapacity - capacity) {
+			// move the wrapped part after the old end, not overlapped so it can be copied in parallel
+			copyChars(address, 0, address, capacity, putIndex);
+			putIndex = (capacity + putIndex) % newCapacity;
+		}else {
+			// move the part from take index to the new end, it may overlap itself so stays on a single memmove
+			int newTakeIndex = newCapacity - tailLen;
+			copyMemory(address, takeIndex, address, newTakeIndex, tailLen);
+			takeIndex = newTakeIndex;
+		}
+		capacity = newCapacity;
+	}
+
 	@Override
 	protected void write(char ch) {
 		writeChar(block.address, putIndex, ch);
@@ -79,37 +118,85 @@ class RollingDirectCharBuffer extends RollingCharBuffer {
 		if(putIndex <= takeIndex) {
 			int tailLen = capacity - takeIndex;
 			if(size <= tailLen) {
-				readChars(address, takeIndex, arr, offset, offset+size);
+				copyChars(address, takeIndex, arr, offset, offset+size);
 			}else {
-				readChars(address, takeIndex, arr, offset, offset+tailLen);
-				readChars(address, 0, arr, offset+tailLen, offset+size);
+				copyChars(address, takeIndex, arr, offset, offset+tailLen);
+				copyChars(address, 0, arr, offset+tailLen, offset+size);
 			}
 		}else {
-			readChars(address, takeIndex, arr, offset, offset+size);
+			copyChars(address, takeIndex, arr, offset, offset+size);
+		}
+	}
+
+	@Override
+	protected char read(int index) {
+		return readChar(block.address, position(index));
+	}
+
+	@Override
+	protected void read(int index, char[] arr, int offset, int size) {
+		long address = block.address;
+		int start = position(index);
+		int tailLen = capacity - start;
+		if(size <= tailLen) {
+			copyChars(address, start, arr, offset, offset+size);
+		}else {
+			copyChars(address, start, arr, offset, offset+tailLen);
+			copyChars(address, 0, arr, offset+tailLen, offset+size);
 		}
 	}
 
+	/** memory offset of <code>index</code> chars after the take index **/
+	private int position(int index) {
+		int tailLen = capacity - takeIndex;
+		return index < tailLen ? takeIndex + index : index - tailLen;
+	}
+
 	@Override
 	protected boolean isArrayBacked() { return false; }
 
 	@Override
 	protected char[] backendArray() { throw new UnsupportedOperationException("rolling direct char buffer"); }
 
-	private static class MemoryBlock {
+	@Override
+	protected long backendAddress() { return block.address; }
+
+	static class MemoryBlock {
 		private final Cleaner cleaner;	// finalize Cleaner clean the memory to prevent memory leak
-		private final long address;		// start address of memory block
+		private final Deallocator deallocator;
+		final long address;				// start address of memory block
+		final int capacity;				// capacity of memory block, in chars
 
 		MemoryBlock(int capacity) {
-			address = allocateMemory(capacity);
-			cleaner = Cleaner.create(this, new Deallocator(address));
+			this(allocateMemory(capacity), capacity, true);
+		}
+		
+		/** a block managed by its owner, such as a slab of {@link RollingCharBufferGroup} **/
+		MemoryBlock(long address, int capacity) {
+			this(address, capacity, false);
+		}
+		
+		private MemoryBlock(long address, int capacity, boolean cleaned) {
+			this.address = address;
+			this.capacity = capacity;
+			deallocator = cleaned ? new Deallocator(address) : null;
+			cleaner = cleaned ? Cleaner.create(this, deallocator) : null;
 		}
 		
 		static MemoryBlock allocate(int capacity) {
 			return new MemoryBlock(capacity);
 		}
 		
+		/** resize a block allocated alone, the old block mustn't be used after that **/
+		static MemoryBlock reallocate(MemoryBlock block, int capacity) {
+			long address = reallocateMemory(block.address, capacity);
+			block.deallocator.address = 0;	// old memory was taken over by realloc
+			block.cleaner.clean();
+			return new MemoryBlock(address, capacity, true);
+		}
+		
 		static void deallocate(MemoryBlock block) {
-			if(block != null) {
+			if(block != null && block.cleaner != null) {
 				block.cleaner.clean();
 			}
 		}
@@ -130,7 +217,7 @@ class RollingDirectCharBuffer extends RollingCharBuffer {
 		resetIndex();
 		capacity = 0;
 		if(block != null) {
-			MemoryBlock.deallocate(block);
+			deallocateBlock(block);
 			block = null;
 		}
 	}
@@ -24,22 +24,16 @@ class RollingHeapCharBuffer extends RollingCharBuffer {
 	protected void ensureCapacity(int incCap) {
 		if(incCap < remained()) { return; }
 		
-		int capacity = capacity();
-		int newCapacity = 0;
-		if(2*incCap <= capacity) {
-			newCapacity = capacity * 3 / 2 + 1;
-		}else {
-			newCapacity = capacity * 2;
-		}
+		int newCapacity = newCapacity(incCap);
 		char[] newBuf = new char[newCapacity];
 
 		if(size > 0) {
 			if(putIndex > takeIndex) {
-				System.arraycopy(buffer, takeIndex, newBuf, 0, size);
+				copyChars(buffer, takeIndex, newBuf, 0, size);
 			}else {
 				int len = buffer.length - takeIndex;
-				System.arraycopy(buffer, takeIndex, newBuf, 0, len);
-				if(size > len) { System.arraycopy(buffer, 0, newBuf, len, putIndex); }
+				copyChars(buffer, takeIndex, newBuf, 0, len);
+				if(size > len) { copyChars(buffer, 0, newBuf, len, putIndex); }
 			}
 		}
 		buffer = newBuf;
@@ -73,16 +67,39 @@ class RollingHeapCharBuffer extends RollingCharBuffer {
 		if(putIndex <= takeIndex) {
 			int len = buffer.length - takeIndex;
 			if(size <= len) {
-				System.arraycopy(buffer, takeIndex, arr, offset, size);
+				copyChars(buffer, takeIndex, arr, offset, size);
 			}else {
-				System.arraycopy(buffer, takeIndex, arr, offset, len);
-				System.arraycopy(buffer, 0, arr, offset+len, size-len);
+				copyChars(buffer, takeIndex, arr, offset, len);
+				copyChars(buffer, 0, arr, offset+len, size-len);
 			}
 		}else {
-			System.arraycopy(buffer, takeIndex, arr, offset, size);
+			copyChars(buffer, takeIndex, arr, offset, size);
+		}
+	}
+
+	@Override
+	protected char read(int index) {
+		return buffer[position(index)];
+	}
+
+	@Override
+	protected void read(int index, char[] arr, int offset, int size) {
+		int start = position(index);
+		int len = buffer.length - start;
+		if(size <= len) {
+			copyChars(buffer, start, arr, offset, size);
+		}else {
+			copyChars(buffer, start, arr, offset, len);
+			copyChars(buffer, 0, arr, offset+len, size-len);
 		}
 	}
 
+	/** array index of <code>index</code> chars after the take index **/
+	private int position(int index) {
+		int tailLen = buffer.length - takeIndex;
+		return index < tailLen ? takeIndex + index : index - tailLen;
+	}
+
 	@Override
 	protected boolean isArrayBacked() { return true; }
 
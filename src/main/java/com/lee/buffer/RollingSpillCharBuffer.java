@@ -0,0 +1,292 @@
+package com.lee.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A rolling char buffer with bounded memory. the head region (being taken) and the tail region
+ * (being put) stay in memory, the content between them is spilled to a temporary file segment by
+ * segment, and read back sequentially as the taker catches up. the content order is always
+ * <code>head, spill file, tail</code>.
+ * <p> The spill file is used as a ring, the space read back is reused by the following spills,
+ * so the file grows only to the most chars spilled at a time.
+ **/
+class RollingSpillCharBuffer extends RollingCharBuffer {
+
+	private RollingCharBuffer head;		// in-memory region being taken
+	private RollingCharBuffer tail;		// in-memory region being put
+	private final int segment;			// usable chars of each region, also the spill segment size
+	private final File directory;		// directory the spill file created in
+	private File file;					// spill file, created on the first spill
+	private FileChannel channel;
+	private long spillPutIndex;			// next put position of the spill file, in chars
+	private long spillTakeIndex;		// next take position of the spill file, in chars
+	private long fileCapacity;			// chars of the spill file ring
+	private long fileTakeIndex;			// offset of spill take position in the file ring, in chars
+	private final int chunk;			// chars moved between memory and file at a time
+	private final char[] chars;			// scratch to move a chunk between memory and file
+	private final ByteBuffer bytes;
+	private final CharBuffer view;		// char view of bytes
+	private final char[] one = new char[1];	// scratch to read a single char from file or tail
+
+	static final int MAX_CHUNK = 4096;	// 8KB, a few file system blocks
+
+	RollingSpillCharBuffer(int memoryThreshold, boolean isDirect, File directory) {
+		super();
+		segment = memoryThreshold / 2;
+		// a rolling buffer always keeps one free slot before expanding
+		head = RollingCharBuffer.allocate(segment + 1, isDirect);
+		tail = RollingCharBuffer.allocate(segment + 1, isDirect);
+		this.directory = directory;
+		chunk = Math.min(segment, MAX_CHUNK);
+		chars = new char[chunk];
+		bytes = ByteBuffer.allocateDirect(chunk * 2);
+		view = bytes.asCharBuffer();
+	}
+
+	/** logical capacity, the content isn't limited by the memory **/
+	@Override
+	protected int retCapacity() { return Integer.MAX_VALUE; }
+
+	@Override
+	protected void ensureCapacity(int incCap) {
+		if(incCap < remained()) { return; }
+		throw new IllegalStateException("spilling buffer can't hold more than " + Integer.MAX_VALUE + " characters");
+	}
+
+	/** chars spilled to file and not yet read back **/
+	private long spilled() { return spillPutIndex - spillTakeIndex; }
+
+	/** put into head only when nothing is queued behind it **/
+	private boolean putToHead() { return spilled() == 0 && tail.isEmpty(); }
+
+	@Override
+	protected void write(char ch) {
+		if(putToHead() && head.size() < segment) {
+			head.put(ch);
+			return;
+		}
+		if(tail.size() == segment) { spill(); }
+		tail.put(ch);
+	}
+
+	@Override
+	protected void write(char[] arr, int offset, int size) {
+		if(putToHead()) {
+			int len = Math.min(size, segment - head.size());
+			if(len > 0) {
+				head.put(arr, offset, len);
+				offset += len;
+				size -= len;
+			}
+		}
+		while(size > 0) {
+			if(tail.size() == segment) { spill(); }
+			int len = Math.min(size, segment - tail.size());
+			tail.put(arr, offset, len);
+			offset += len;
+			size -= len;
+		}
+	}
+
+	@Override
+	protected char read() {
+		if(head.isEmpty()) { fill(); }
+		return head.read();
+	}
+
+	@Override
+	protected void read(char[] arr, int offset, int size) {
+		read(0, arr, offset, size);
+	}
+
+	@Override
+	protected char read(int index) {
+		if(head.isEmpty()) { fill(); }
+		if(index < head.size()) {
+			return head.read(index);
+		}
+		read(index, one, 0, 1);
+		return one[0];
+	}
+
+	@Override
+	protected void read(int index, char[] arr, int offset, int size) {
+		if(head.isEmpty()) { fill(); }
+		if(index < head.size()) {
+			int len = Math.min(size, head.size() - index);
+			head.read(index, arr, offset, len);
+			offset += len;
+			size -= len;
+			index = 0;
+		}else {
+			index -= head.size();
+		}
+
+		long position = spillTakeIndex + index;
+		while(size > 0 && position < spillPutIndex) {
+			int len = (int) Math.min(size, Math.min(chunk, spillPutIndex - position));
+			load(position, arr, offset, len);
+			position += len;
+			offset += len;
+			size -= len;
+		}
+
+		if(size > 0) { tail.read((int) (position - spillPutIndex), arr, offset, size); }
+	}
+
+	@Override
+	protected void discard(int step) {
+		while(step > 0) {
+			if(head.isEmpty()) { fill(); }
+			int len = Math.min(step, head.size());
+			head.shiftTakeIndex(len);
+			step -= len;
+		}
+	}
+
+	/** write the whole tail region to the end of spill file **/
+	private void spill() {
+		try {
+			if(channel == null) {
+				file = File.createTempFile("rolling", ".spill", directory);
+				channel = new RandomAccessFile(file, "rw").getChannel();
+			}
+			if(spilled() + tail.size() > fileCapacity) {
+				expandFile(spilled() + tail.size());
+			}
+			while(!tail.isEmpty()) {
+				int len = Math.min(chunk, tail.size());
+				tail.take(chars, 0, len);
+				view.clear();
+				view.put(chars, 0, len);
+				long offset = offset(spillPutIndex);
+				int tailLen = (int) Math.min(len, fileCapacity - offset);
+				bytes.clear().limit(tailLen * 2);
+				writeFully(offset);
+				bytes.limit(len * 2);
+				writeFully(0);
+				spillPutIndex += len;
+			}
+		}catch(IOException e) {
+			throw new IllegalStateException("spill characters to file failed", e);
+		}
+	}
+
+	/**
+	 * expand the file ring to hold <code>required</code> chars, the chars wrapped to the beginning
+	 * of the file are moved after the old end, the same as an expanding rolling buffer
+	 */
+	private void expandFile(long required) throws IOException {
+		long newCapacity = Math.max(required, fileCapacity * 2);
+		long wrapped = fileTakeIndex + spilled() - fileCapacity;
+		for(long moved = 0; moved < wrapped; ) {
+			int len = (int) Math.min(chunk, wrapped - moved);
+			bytes.clear().limit(len * 2);
+			readFully(moved);
+			bytes.flip();
+			writeFully(fileCapacity + moved);
+			moved += len;
+		}
+		fileCapacity = newCapacity;
+	}
+
+	/** offset of the spilled char at <code>position</code> in the file ring **/
+	private long offset(long position) {
+		long offset = fileTakeIndex + position - spillTakeIndex;
+		return offset < fileCapacity ? offset : offset - fileCapacity;
+	}
+
+	/** write the remaining bytes at the file ring offset <code>offset</code>, in chars **/
+	private void writeFully(long offset) throws IOException {
+		long pos = offset * 2;
+		while(bytes.hasRemaining()) {
+			pos += channel.write(bytes, pos);
+		}
+	}
+
+	/** read the remaining bytes from the file ring offset <code>offset</code>, in chars **/
+	private void readFully(long offset) throws IOException {
+		long pos = offset * 2;
+		while(bytes.hasRemaining()) {
+			int n = channel.read(bytes, pos);
+			if(n < 0) { throw new IOException("unexpected end of spill file"); }
+			pos += n;
+		}
+	}
+
+	/** refill the empty head region, from spill file first, then from the tail region **/
+	private void fill() {
+		if(spilled() > 0) {
+			int len = (int) Math.min(segment, spilled());
+			for(int filled = 0; filled < len; ) {
+				int n = Math.min(chunk, len - filled);
+				load(spillTakeIndex, chars, 0, n);
+				head.put(chars, 0, n);
+				fileTakeIndex = offset(spillTakeIndex + n);
+				spillTakeIndex += n;
+				filled += n;
+			}
+			if(spilled() == 0) { fileTakeIndex = 0; }	// reuse the file from the beginning
+		}else {
+			// swap the regions, the empty head becomes the new tail
+			RollingCharBuffer tmp = head;
+			head = tail;
+			tail = tmp;
+		}
+	}
+
+	/** read <code>len</code> (not more than a chunk) spilled chars at <code>position</code> to <code>arr</code> **/
+	private void load(long position, char[] arr, int offset, int len) {
+		long fileOffset = offset(position);
+		int tailLen = (int) Math.min(len, fileCapacity - fileOffset);
+		bytes.clear().limit(tailLen * 2);
+		try {
+			readFully(fileOffset);
+			bytes.limit(len * 2);
+			readFully(0);
+		}catch(IOException e) {
+			throw new IllegalStateException("read back spilled characters failed", e);
+		}
+		view.clear();
+		view.get(arr, offset, len);
+	}
+
+	@Override
+	protected void clear() {
+		head.reset();
+		tail.reset();
+		spillPutIndex = spillTakeIndex = fileTakeIndex = 0;
+	}
+
+	@Override
+	protected boolean isArrayBacked() { return false; }
+
+	@Override
+	protected char[] backendArray() { throw new UnsupportedOperationException("rolling spill char buffer"); }
+
+	@Override
+	protected void clean() {
+		resetIndex();
+		head.release();
+		tail.release();
+		spillPutIndex = spillTakeIndex = fileTakeIndex = fileCapacity = 0;
+		if(channel != null) {
+			try {
+				channel.close();
+			}catch(IOException e) {
+				// ignore, the file is deleted anyway
+			}
+			channel = null;
+		}
+		if(file != null) {
+			file.delete();
+			file = null;
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.lee.buffer;
+
+import static com.lee.util.PlatformDependent.readLong;
+
+/**
+ * UTF-8 codec of a rolling char buffer. keeps the state of a multibyte sequence split across
+ * {@link RollingCharBuffer#putUtf8(byte[], int, int) putUtf8} calls. each maximal invalid prefix of
+ * malformed input is decoded to one <code>U+FFFD</code>, the byte ending it is decoded again, and
+ * the unpaired surrogate is encoded to <code>'?'</code>, the same as the JDK's replacement.
+ **/
+final class Utf8Codec {
+
+	private static final long ASCII_MASK = 0x8080808080808080L;
+	static final char REPLACEMENT = '\uFFFD';
+
+	final byte[] bytes = new byte[1024];	// scratch of the ByteBuffer not backed by array
+	final char[] pair = new char[2];		// scratch of the surrogate pair split by the wrap point
+
+	private int codePoint;	// decoded bits of current multibyte sequence
+	private int remaining;	// continuation bytes expected by current multibyte sequence
+	private int lower;		// lower bound of next continuation byte, rejects overlong sequences
+	private int upper;		// upper bound of next continuation byte, rejects sequences above U+10FFFF
+	private char lowSurrogate;	// decoded low surrogate not yet placed for no space
+
+	int srcIndex;	// source index after the last decode or encode
+	int dstIndex;	// destination index after the last decode or encode
+
+	void reset() {
+		codePoint = remaining = 0;
+		lowSurrogate = 0;
+	}
+
+	/** whether a decoded char is waiting for space **/
+	boolean hasPending() { return lowSurrogate != 0; }
+
+	/** drop the multibyte sequence truncated by the end of input, return whether there was one **/
+	boolean endOfInput() {
+		if(remaining == 0) { return false; }
+		codePoint = remaining = 0;
+		return true;
+	}
+
+	/**
+	 * decode bytes of <code>src[sp, sl)</code> to <code>dst[dp, dl)</code> until either is exhausted,
+	 * the stopped indices are left in {@link #srcIndex} and {@link #dstIndex}.
+	 */
+	void decode(byte[] src, int sp, int sl, char[] dst, int dp, int dl) {
+		if(lowSurrogate != 0 && dp < dl) {
+			dst[dp++] = lowSurrogate;
+			lowSurrogate = 0;
+		}
+		while(sp < sl && dp < dl) {
+			if(remaining == 0) {
+				// ASCII fast path, a word at a time
+				while(sp + 8 <= sl && dp + 8 <= dl && (readLong(src, sp) & ASCII_MASK) == 0) {
+					for(int i = 0; i < 8; i++) {
+						dst[dp+i] = (char) src[sp+i];
+					}
+					sp += 8;
+					dp += 8;
+				}
+				if(sp == sl || dp == dl) { break; }
+
+				int b = src[sp++] & 0xFF;
+				if(b < 0x80) {
+					dst[dp++] = (char) b;
+				}else if(b < 0xC2 || b > 0xF4) {	// continuation, overlong or out of range lead byte
+					dst[dp++] = REPLACEMENT;
+				}else if(b < 0xE0) {
+					codePoint = b & 0x1F;
+					remaining = 1;
+					lower = 0x80;
+					upper = 0xBF;
+				}else if(b < 0xF0) {
+					codePoint = b & 0x0F;
+					remaining = 2;
+					lower = b == 0xE0 ? 0xA0 : 0x80;	// overlong
+					upper = 0xBF;
+				}else {
+					codePoint = b & 0x07;
+					remaining = 3;
+					lower = b == 0xF0 ? 0x90 : 0x80;	// overlong
+					upper = b == 0xF4 ? 0x8F : 0xBF;	// above U+10FFFF
+				}
+				continue;
+			}
+
+			int b = src[sp] & 0xFF;
+			if(b < lower || b > upper) {	// invalid sequence, decode the byte again as a new sequence
+				remaining = 0;
+				dst[dp++] = REPLACEMENT;
+				continue;
+			}
+			sp++;
+			codePoint = (codePoint << 6) | (b & 0x3F);
+			lower = 0x80;
+			upper = 0xBF;
+			if(--remaining > 0) { continue; }
+
+			if(codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+				dst[dp++] = REPLACEMENT;	// a whole encoded surrogate is one malformed input, as the JDK decodes it
+			}else if(codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				dst[dp++] = (char) codePoint;
+			}else {
+				dst[dp++] = Character.highSurrogate(codePoint);
+				if(dp < dl) {
+					dst[dp++] = Character.lowSurrogate(codePoint);
+				}else {
+					lowSurrogate = Character.lowSurrogate(codePoint);
+				}
+			}
+		}
+		srcIndex = sp;
+		dstIndex = dp;
+	}
+
+	/**
+	 * encode chars of <code>src[sp, sl)</code> to <code>dst[dp, dl)</code> until either is exhausted,
+	 * a char is never split, and a high surrogate at <code>sl - 1</code> is left for its low surrogate.
+	 * the stopped indices are left in {@link #srcIndex} and {@link #dstIndex}.
+	 */
+	void encode(char[] src, int sp, int sl, byte[] dst, int dp, int dl) {
+		while(sp < sl) {
+			// ASCII fast path, 8 chars at a time
+			while(sp + 8 <= sl && dp + 8 <= dl
+					&& (src[sp] | src[sp+1] | src[sp+2] | src[sp+3] | src[sp+4] | src[sp+5] | src[sp+6] | src[sp+7]) < 0x80) {
+				for(int i = 0; i < 8; i++) {
+					dst[dp+i] = (byte) src[sp+i];
+				}
+				sp += 8;
+				dp += 8;
+			}
+			if(sp == sl) { break; }
+
+			char ch = src[sp];
+			if(ch < 0x80) {
+				if(dp == dl) { break; }
+				dst[dp++] = (byte) ch;
+				sp++;
+			}else if(ch < 0x800) {
+				if(dl - dp < 2) { break; }
+				dst[dp++] = (byte) (0xC0 | ch >> 6);
+				dst[dp++] = (byte) (0x80 | ch & 0x3F);
+				sp++;
+			}else if(Character.isHighSurrogate(ch)) {
+				if(sp + 1 == sl) { break; }
+				char low = src[sp+1];
+				if(Character.isLowSurrogate(low)) {
+					if(dl - dp < 4) { break; }
+					int cp = Character.toCodePoint(ch, low);
+					dst[dp++] = (byte) (0xF0 | cp >> 18);
+					dst[dp++] = (byte) (0x80 | cp >> 12 & 0x3F);
+					dst[dp++] = (byte) (0x80 | cp >> 6 & 0x3F);
+					dst[dp++] = (byte) (0x80 | cp & 0x3F);
+					sp += 2;
+				}else {
+					if(dp == dl) { break; }
+					dst[dp++] = '?';
+					sp++;
+				}
+			}else if(Character.isLowSurrogate(ch)) {
+				if(dp == dl) { break; }
+				dst[dp++] = '?';
+				sp++;
+			}else {
+				if(dl - dp < 3) { break; }
+				dst[dp++] = (byte) (0xE0 | ch >> 12);
+				dst[dp++] = (byte) (0x80 | ch >> 6 & 0x3F);
+				dst[dp++] = (byte) (0x80 | ch & 0x3F);
+				sp++;
+			}
+		}
+		srcIndex = sp;
+		dstIndex = dp;
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.lee.util;
+
+/**
+ * Reactive streams interfaces, the same shape as <code>java.util.concurrent.Flow</code> of Java 9,
+ * so the publishers here can be bridged to it, or switched to it by the import only.
+ **/
+public final class Flow {
+
+	private Flow() { }
+
+	/** A producer of items received by {@link Subscriber}s **/
+	public static interface Publisher<T> {
+		/** add the subscriber, {@link Subscriber#onSubscribe(Subscription)} is invoked with a new subscription **/
+		public void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/** A receiver of items, invoked in order and never concurrently **/
+	public static interface Subscriber<T> {
+		/** invoked before any other method for the given subscription **/
+		public void onSubscribe(Subscription subscription);
+		/** invoked with the next item, never more items than requested **/
+		public void onNext(T item);
+		/** invoked on an unrecoverable error, no other method is invoked after that **/
+		public void onError(Throwable throwable);
+		/** invoked when no more items will be invoked **/
+		public void onComplete();
+	}
+
+	/** Link of a {@link Publisher} and a {@link Subscriber} **/
+	public static interface Subscription {
+		/** add <code>n</code> items to the demand, a non positive <code>n</code> is signalled as an error **/
+		public void request(long n);
+		/** stop receiving items, eventually **/
+		public void cancel();
+	}
+}
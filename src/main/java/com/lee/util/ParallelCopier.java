@@ -0,0 +1,109 @@
+package com.lee.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Copy characters in parallel on a {@link ForkJoinPool}. a copy not less than <code>threshold</code> chars
+ * is split into cache friendly chunks of <code>chunk</code> chars, a smaller one is done by the caller alone.
+ * the source and destination of a parallel copy mustn't overlap.
+ */
+public final class ParallelCopier {
+
+	private final ForkJoinPool pool;
+	private final int threshold;	// min chars copied in parallel
+	private final int chunk;		// chars copied by a task
+
+	/**
+	 * @param pool		pool running the copy tasks
+	 * @param threshold	min chars copied in parallel
+	 * @param chunk		chars copied by a task
+	 * @throws	IllegalArgumentException
+     *          If the <tt>threshold</tt> or <tt>chunk</tt> isn't a positive integer
+	 */
+	public ParallelCopier(ForkJoinPool pool, int threshold, int chunk) {
+		if(pool == null) {
+			throw new IllegalArgumentException("pool is null.");
+		}
+		if(threshold < 1 || chunk < 1) {
+			throw new IllegalArgumentException("threshold and chunk must be positive integers.");
+		}
+		this.pool = pool;
+		this.threshold = threshold;
+		this.chunk = chunk;
+	}
+
+	/** a copier on the common pool, copying 1M chars or more in chunks of 128K chars (256KB, about a L2 cache) **/
+	public static ParallelCopier commonPool() {
+		return new ParallelCopier(ForkJoinPool.commonPool(), 1 << 20, 1 << 17);
+	}
+
+	/** {@link System#arraycopy(Object, int, Object, int, int)} of char arrays **/
+	public void arraycopy(final char[] src, final int srcPos, final char[] dest, final int destPos, int length) {
+		if(length < threshold) {
+			System.arraycopy(src, srcPos, dest, destPos, length);
+			return;
+		}
+		pool.invoke(new CopyTask(0, length, new Copy() {
+			public void copy(int from, int len) {
+				System.arraycopy(src, srcPos+from, dest, destPos+from, len);
+			}
+		}));
+	}
+
+	/** {@link PlatformDependent#copyMemory(long, int, long, int, long)} **/
+	public void copyMemory(final long srcMemAddr, final int srcOffset, final long destMemAddr, final int destOffset, int chars) {
+		if(chars < threshold) {
+			PlatformDependent.copyMemory(srcMemAddr, srcOffset, destMemAddr, destOffset, chars);
+			return;
+		}
+		pool.invoke(new CopyTask(0, chars, new Copy() {
+			public void copy(int from, int len) {
+				PlatformDependent.copyMemory(srcMemAddr, srcOffset+from, destMemAddr, destOffset+from, len);
+			}
+		}));
+	}
+
+	/** {@link PlatformDependent#readChars(long, int, char[], int, int)} **/
+	public void readChars(final long address, final int offset, final char[] arr, final int beginIndex, int endIndex) {
+		if(endIndex - beginIndex < threshold) {
+			PlatformDependent.readChars(address, offset, arr, beginIndex, endIndex);
+			return;
+		}
+		pool.invoke(new CopyTask(0, endIndex - beginIndex, new Copy() {
+			public void copy(int from, int len) {
+				PlatformDependent.readChars(address, offset+from, arr, beginIndex+from, beginIndex+from+len);
+			}
+		}));
+	}
+
+	/** copy of chars <code>[from, from+len)</code> relative to the start of source and destination **/
+	private static interface Copy {
+		void copy(int from, int len);
+	}
+
+	/** a copy split in halves until a chunk **/
+	private class CopyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int len;
+		private final Copy copy;
+
+		CopyTask(int from, int len, Copy copy) {
+			this.from = from;
+			this.len = len;
+			this.copy = copy;
+		}
+
+		@Override
+		protected void compute() {
+			if(len <= chunk) {
+				copy.copy(from, len);
+				return;
+			}
+			int half = len / 2;
+			invokeAll(new CopyTask(from, half, copy), new CopyTask(from + half, len - half, copy));
+		}
+	}
+
+}
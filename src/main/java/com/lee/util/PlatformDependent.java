@@ -10,11 +10,13 @@ public class PlatformDependent {
 	private static final Unsafe UNSAFE;
 	private static final long CHAR_ARRAY_OFFSET;
 	private static final long CHAR_ARRAY_SCALE;
+	private static final long BYTE_ARRAY_OFFSET;
 	
 	static {
 		Unsafe unsafe = null;
 		long offset = 0;
 		long scale = 0;
+		long byteOffset = 0;
 		try {
 			// whether support sum.misc.Cleaner or not
 			Class.forName("sun.misc.Cleaner");
@@ -32,14 +34,16 @@ public class PlatformDependent {
 			// report the char array base offset and index scale
 			offset = unsafe.arrayBaseOffset(char[].class);
 			scale = unsafe.arrayIndexScale(char[].class);
+			byteOffset = unsafe.arrayBaseOffset(byte[].class);
 		}catch(Throwable t) {	// not support Unsafe operations
 			unsafe = null;
-			offset = scale = 0;
+			offset = scale = byteOffset = 0;
 		}
 		
 		UNSAFE = unsafe;
 		CHAR_ARRAY_OFFSET = offset;
 		CHAR_ARRAY_SCALE = scale;
+		BYTE_ARRAY_OFFSET = byteOffset;
 	}
 	
 	public static boolean hasUnsafe() {
@@ -65,6 +69,27 @@ public class PlatformDependent {
 		return UNSAFE.allocateMemory(CHAR_ARRAY_SCALE * chars);
 	}
 	
+	/** return the address of the <code>offset</code> character from memory address <code>address</code> **/
+	public static long offsetAddress(long address, int offset) {
+		if(!hasUnsafe()) {
+			throw new UnsupportedOperationException("unsupported opertaion: offsetAddress(long, int)");
+		}
+		return address + offset*CHAR_ARRAY_SCALE;
+	}
+	
+	/** resize the memory block allocated by {@link #allocateMemory(long)} to <code>chars</code> characters,
+	 * in place if possible. the content is kept, the old address mustn't be used after that.
+	 */
+	public static long reallocateMemory(long address, long chars) {
+		if(chars < 0) {
+			throw new IllegalArgumentException("illegal argument for reallocate memory operaion");
+		}
+		if(!hasUnsafe()) {
+			throw new UnsupportedOperationException("unsupported opertaion: reallocateMemory(long, long)");
+		}
+		return UNSAFE.reallocateMemory(address, CHAR_ARRAY_SCALE * chars);
+	}
+	
 	/** deallocate the memory block allocated by {@link #allcateMemory(long)} **/
 	public static void freeMemory(long address) {
 		if(!hasUnsafe()) {
@@ -84,6 +109,11 @@ public class PlatformDependent {
 		return UNSAFE.getChar(address+offset*CHAR_ARRAY_SCALE);
 	}
 	
+	/** read a character like {@link #readChar(long, int)} without any check, the caller must confirm the arguments are valid **/
+	public static char readCharUnchecked(long address, int offset) {
+		return UNSAFE.getChar(address+offset*CHAR_ARRAY_SCALE);
+	}
+	
 	/** read characters to <code>arr</code> from the memory address <code>address</code> with <code>offset</code> **/
 	public static void readChars(long address, int offset, char[] arr) {
 		if(address == 0 || offset < 0 || arr == null) {
@@ -116,6 +146,24 @@ public class PlatformDependent {
 		copyMemory(address, offset, arr, beginIndex, endIndex - beginIndex);
 	}
 	
+	/**
+	 * read 8 bytes from <code>arr</code> started with <code>index</code> as a long, in native byte order.
+	 * the caller must confirm <code>index + 8 &lt;= arr.length</code>.
+	 */
+	public static long readLong(byte[] arr, int index) {
+		if(hasUnsafe()) {
+			return UNSAFE.getLong(arr, BYTE_ARRAY_OFFSET+index);
+		}
+		return (arr[index] & 0xFFL)
+			 | (arr[index+1] & 0xFFL) << 8
+			 | (arr[index+2] & 0xFFL) << 16
+			 | (arr[index+3] & 0xFFL) << 24
+			 | (arr[index+4] & 0xFFL) << 32
+			 | (arr[index+5] & 0xFFL) << 40
+			 | (arr[index+6] & 0xFFL) << 48
+			 | (arr[index+7] & 0xFFL) << 56;
+	}
+	
 	/** write a character to the memory address <code>address</code> with <code>offset</code> **/
 	public static void writeChar(long address, int offset, char ch) {
 		if(address == 0 || offset < 0) {
@@ -127,6 +175,11 @@ public class PlatformDependent {
 		UNSAFE.putChar(address+offset*CHAR_ARRAY_SCALE, ch);
 	}
 	
+	/** write a character like {@link #writeChar(long, int, char)} without any check, the caller must confirm the arguments are valid **/
+	public static void writeCharUnchecked(long address, int offset, char ch) {
+		UNSAFE.putChar(address+offset*CHAR_ARRAY_SCALE, ch);
+	}
+	
 	/** write characters from <code>arr</code> to the memory address <code>address</code> with <code>offset</code> **/
 	public static void writeChars(long address, int offset, char[] arr) {
 		if(address == 0 || offset < 0 || arr == null) {
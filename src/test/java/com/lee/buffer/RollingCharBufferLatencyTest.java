@@ -0,0 +1,163 @@
+package com.lee.buffer;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latency percentiles and allocation regression harness of the put/take hot paths.
+ * <p> Records p50/p99/p99.9 of each operation on heap and direct buffers, and counts the bytes allocated
+ * by the steady state operations with the thread allocated bytes of <code>com.sun.management.ThreadMXBean</code>.
+ * Exits with an {@link AssertionError} when a percentile exceeds its threshold or a steady state operation
+ * allocates, the thresholds can be overridden by system properties:
+ * <pre>
+ * -Dlatency.p99=nanos  -Dlatency.p999=nanos  -Dgrowth.p999=nanos  -Dallocation.bytes=bytes
+ * </pre>
+ */
+public class RollingCharBufferLatencyTest {
+
+	private static final int WARMUP = 200000;
+	private static final int SAMPLES = 200000;
+	private static final long P99_NANOS = Long.getLong("latency.p99", 2000);
+	private static final long P999_NANOS = Long.getLong("latency.p999", 20000);
+	private static final long GROWTH_P999_NANOS = Long.getLong("growth.p999", 200000);
+	private static final long ALLOCATION_BYTES = Long.getLong("allocation.bytes", 0);
+
+	private static final List<String> failures = new ArrayList<String>();
+
+	public static void main(String[] args) {
+		testLatency(false);
+		testLatency(true);
+		testAllocation(false);
+		testAllocation(true);
+		if(!failures.isEmpty()) {
+			throw new AssertionError("regression: " + failures);
+		}
+	}
+
+	private static void testLatency(boolean isDirect) {
+		String name = isDirect ? "direct" : "heap";
+		RollingCharBuffer buffer = RollingCharBuffer.allocate(1024, isDirect);
+		char[] chars = new char[16];
+		long[] samples = new long[SAMPLES];
+
+		for(int round = 0; round < 2; round++) {	// the first round warms up
+			boolean record = round == 1;
+			int count = record ? SAMPLES : WARMUP;
+
+			for(int i = 0; i < count; i++) {
+				long start = System.nanoTime();
+				buffer.put('a');
+				long end = System.nanoTime();
+				buffer.take();
+				if(record) { samples[i] = end - start; }
+			}
+			if(record) { check(name + " put(char)", samples, P99_NANOS, P999_NANOS); }
+
+			for(int i = 0; i < count; i++) {
+				buffer.put('a');
+				long start = System.nanoTime();
+				buffer.take();
+				long end = System.nanoTime();
+				if(record) { samples[i] = end - start; }
+			}
+			if(record) { check(name + " take()", samples, P99_NANOS, P999_NANOS); }
+
+			for(int i = 0; i < count; i++) {
+				long start = System.nanoTime();
+				buffer.put(chars, 0, chars.length);
+				long end = System.nanoTime();
+				buffer.shiftTakeIndex(chars.length);
+				if(record) { samples[i] = end - start; }
+			}
+			if(record) { check(name + " put(char[16])", samples, P99_NANOS, P999_NANOS); }
+
+			for(int i = 0; i < count; i++) {
+				buffer.put(chars, 0, chars.length);
+				long start = System.nanoTime();
+				buffer.take(chars, 0, chars.length);
+				long end = System.nanoTime();
+				if(record) { samples[i] = end - start; }
+			}
+			if(record) { check(name + " take(char[16])", samples, P99_NANOS, P999_NANOS); }
+
+			// growth from a small buffer, the allocation of the buffer itself isn't timed
+			int growths = count / 100;
+			for(int i = 0; i < growths; i++) {
+				RollingCharBuffer small = RollingCharBuffer.allocate(16, isDirect);
+				small.put(chars, 0, 15);
+				long start = System.nanoTime();
+				small.put(chars, 0, chars.length);
+				long end = System.nanoTime();
+				small.release();
+				if(record) { samples[i] = end - start; }
+			}
+			if(record) { check(name + " growth", Arrays.copyOf(samples, growths), GROWTH_P999_NANOS, GROWTH_P999_NANOS); }
+		}
+		buffer.release();
+	}
+
+	private static void testAllocation(boolean isDirect) {
+		String name = isDirect ? "direct" : "heap";
+		RollingCharBuffer buffer = RollingCharBuffer.allocate(1024, isDirect);
+		char[] chars = new char[16];
+		byte[] bytes = "steady ascii and \u00e9\u4e2d".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer out = ByteBuffer.allocate(64);
+
+		for(int round = 0; round < 2; round++) {	// the first round warms up and creates the lazy scratches
+			long before = allocatedBytes();
+			for(int i = 0; i < SAMPLES; i++) {
+				buffer.put('a');
+				buffer.take();
+				buffer.put(chars, 0, chars.length);
+				buffer.take(chars, 0, chars.length);
+				buffer.put(chars);
+				buffer.shiftTakeIndex(chars.length);
+				buffer.putUtf8(bytes, 0, bytes.length);
+				out.clear();
+				buffer.takeUtf8(out);
+			}
+			long allocated = allocatedBytes() - before;
+			if(round == 1) {
+				println(String.format("%-24s allocated %d bytes in %d rounds", name + " steady state", allocated, SAMPLES));
+				if(allocated > ALLOCATION_BYTES) {
+					failures.add(name + " steady state allocated " + allocated + " bytes");
+				}
+			}
+		}
+		buffer.release();
+	}
+
+	/** sort <code>samples</code> and check the percentiles with the thresholds **/
+	private static void check(String operation, long[] samples, long p99Threshold, long p999Threshold) {
+		Arrays.sort(samples);
+		long p50 = percentile(samples, 0.5);
+		long p99 = percentile(samples, 0.99);
+		long p999 = percentile(samples, 0.999);
+		println(String.format("%-24s p50 %6d ns, p99 %6d ns, p99.9 %6d ns", operation, p50, p99, p999));
+		if(p99 > p99Threshold) {
+			failures.add(operation + " p99 " + p99 + " ns > " + p99Threshold + " ns");
+		}
+		if(p999 > p999Threshold) {
+			failures.add(operation + " p99.9 " + p999 + " ns > " + p999Threshold + " ns");
+		}
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+	}
+
+	/** bytes allocated by current thread, the measurement itself allocates nothing after the first call **/
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static <T> void println(T obj) {
+		System.out.println(obj);
+	}
+
+}
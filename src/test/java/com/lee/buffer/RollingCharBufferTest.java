@@ -1,12 +1,52 @@
 package com.lee.buffer;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import com.lee.util.ParallelCopier;
+import com.lee.util.Flow.Subscriber;
+import com.lee.util.Flow.Subscription;
 
 public class RollingCharBufferTest {
 
 	public static void main(String[] args) throws Exception {
 		testRollingHeapCharBuffer();
 		testRollingDirectCharBuffer();
+		testRollingSpillCharBuffer();
+		testRollingCharBufferGroup();
+		testUtf8(RollingCharBuffer.allocate(6));
+		testUtf8(RollingCharBuffer.allocate(6, true));
+		testUtf8(RollingCharBuffer.allocateSpilling(8));
+		testGatherScatter(RollingCharBuffer.allocate(6));
+		testGatherScatter(RollingCharBuffer.allocate(6, true));
+		testPublisher();
+		testMulticast(RollingCharBuffer.allocate(8));
+		testMulticast(RollingCharBuffer.allocate(8, true));
+		testMulticast(RollingCharBuffer.allocateSpilling(8));
+		testRollingHash(RollingCharBuffer.allocate(6));
+		testRollingHash(RollingCharBuffer.allocate(6, true));
+		testRollingHash(RollingCharBuffer.allocateSpilling(8));
+		testPrefetcher(StandardCharsets.UTF_8);
+		testPrefetcher(StandardCharsets.UTF_16LE);
+		testGrowthPolicy(GrowthPolicy.defaults());
+		testGrowthPolicy(GrowthPolicy.exactFit());
+		testGrowthPolicy(GrowthPolicy.geometric(1.25, 16));
+		testGrowthPolicy(GrowthPolicy.pageAligned());
+		testParallelCopier(RollingCharBuffer.allocate(100));
+		testParallelCopier(RollingCharBuffer.allocate(100, true));
+		testSession(RollingCharBuffer.allocate(6));
+		testSession(RollingCharBuffer.allocate(6, true));
+		testSession(RollingCharBuffer.allocateSpilling(8));
 	}
 
 	public static void testRollingHeapCharBuffer() {
@@ -17,6 +57,388 @@ public class RollingCharBufferTest {
 		testOpSeq(RollingCharBuffer.allocate(6, true));
 	}
 	
+	public static void testRollingSpillCharBuffer() throws IOException {
+		testOpSeq(RollingCharBuffer.allocateSpilling(4));
+		
+		RollingCharBuffer buffer = RollingCharBuffer.allocateSpilling(16);
+		StringBuilder expected = new StringBuilder();
+		StringBuilder actual = new StringBuilder();
+		for(int i = 0; i < 1000; i++) {
+			char[] chars = String.valueOf(i).toCharArray();
+			expected.append(chars);
+			buffer.put(chars);
+			if(i % 3 == 0) { actual.append(buffer.take()); }
+			if(i % 7 == 0 && buffer.size() > 1) { actual.append(buffer.take(buffer.size() / 2)); }
+		}
+		actual.append(buffer.takeAll());
+		println(expected.toString().equals(actual.toString()));
+		buffer.release();
+		
+		// a consumer keeping pace with a steady backlog reuses the spill file
+		Path directory = Files.createTempDirectory("rolling");
+		buffer = RollingCharBuffer.allocateSpilling(64, false, directory.toFile());
+		char[] chars = new char[512];
+		char[] taken = new char[512];
+		boolean ordered = true;
+		for(int i = 0; i < 2000; i++) {
+			Arrays.fill(chars, (char) ('a' + i % 26));
+			buffer.put(chars);
+			if(i > 3) {
+				buffer.take(taken, 0, taken.length);
+				ordered &= taken[0] == (char) ('a' + (i - 4) % 26) && taken[511] == taken[0];
+			}
+		}
+		long fileSize = 0;
+		for(File file : directory.toFile().listFiles()) {
+			fileSize += file.length();
+		}
+		println(ordered + " " + (fileSize <= 4 * 512 * 2 * 2) + " " + buffer.size());
+		buffer.release();
+		println(directory.toFile().listFiles().length == 0);
+		Files.delete(directory);
+	}
+	
+	public static void testRollingCharBufferGroup() {
+		RollingCharBufferGroup group = new RollingCharBufferGroup(64);
+		testOpSeq(group.allocate(6));
+		
+		RollingCharBuffer[] buffers = new RollingCharBuffer[100];
+		for(int i = 0; i < buffers.length; i++) {
+			buffers[i] = group.allocate(1 + i % 40);
+			buffers[i].put(String.valueOf(i).toCharArray());
+		}
+		boolean matched = true;
+		for(int i = 0; i < buffers.length; i++) {
+			matched &= String.valueOf(i).equals(new String(buffers[i].takeAll()));
+			buffers[i].release();
+		}
+		println(matched);
+		
+		RollingCharBuffer buffer = group.allocate(6);
+		println(buffer.capacity());
+		buffer.put(new char[12]);	// fits the 16 chars size class, no growth
+		println(buffer.capacity());
+		
+		group.close();
+		buffer.put(new char[100]);	// a buffer not yet released keeps working and growing
+		println(buffer.size() + " " + buffer.capacity());
+		buffer.release();
+		try {
+			group.allocate(100);
+			println(false);
+		}catch(IllegalStateException e) {
+			println(e.getMessage());
+		}
+	}
+	
+	public static void testUtf8(RollingCharBuffer buffer) {
+		String text = "rolling \u00e9\u4e2d\ud83d\ude00 buffer, ascii run long enough for the word path \ud83d\ude01";
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer out = ByteBuffer.allocate(bytes.length);
+		ByteBuffer small = ByteBuffer.allocateDirect(5);
+		for(int i = 0; i < bytes.length; i += 3) {
+			buffer.putUtf8(bytes, i, Math.min(3, bytes.length - i));	// split multibyte sequences
+			small.clear();
+			buffer.takeUtf8(small);
+			small.flip();
+			out.put(small);
+		}
+		buffer.takeUtf8(out);
+		println(text.equals(new String(out.array(), 0, out.position(), StandardCharsets.UTF_8)));
+		
+		buffer.putUtf8(ByteBuffer.wrap(new byte[] {'a', (byte) 0xE4, 'b', (byte) 0xFF}));
+		println(new String(buffer.takeAll()).equals("a\ufffdb\ufffd"));
+		
+		byte[] truncated = {'a', (byte) 0xE4, (byte) 0xB8};
+		buffer.putUtf8(truncated, 0, truncated.length, true);	// the same as the JDK decoder
+		println(new String(buffer.takeAll()).equals(new String(truncated, StandardCharsets.UTF_8)));
+		
+		// malformed input is replaced the same as the JDK, whole or split byte by byte
+		byte[][] malformed = {
+			{(byte) 0xF7, (byte) 0x93, (byte) 0xAA}, {(byte) 0xE0, (byte) 0x80, (byte) 0x80}, {(byte) 0xC0, (byte) 0x80},
+			{(byte) 0xF0, (byte) 0x90, 'a'}, {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80}, {(byte) 0xED, (byte) 0xA0, (byte) 0x80},
+			{(byte) 0xED, (byte) 0x9F, (byte) 0xBF}, {(byte) 0xE4, (byte) 0xB8, 'b'}, {(byte) 0x80, (byte) 0xBF, (byte) 0xFE, (byte) 0xFF},
+		};
+		boolean same = true;
+		for(byte[] input : malformed) {
+			String expected = new String(input, StandardCharsets.UTF_8);
+			buffer.putUtf8(input, 0, input.length, true);
+			same &= expected.equals(new String(buffer.takeAll()));
+			for(int i = 0; i < input.length; i++) {
+				buffer.putUtf8(input, i, 1, i == input.length - 1);
+			}
+			same &= expected.equals(new String(buffer.takeAll()));
+		}
+		println(same);
+		buffer.release();
+	}
+	
+	public static void testGatherScatter(RollingCharBuffer buffer) {
+		buffer.put('1');
+		buffer.take();
+		buffer.put("head:", new StringBuilder("body"), ";");
+		buffer.put(new char[]{'t', 'r'}, new char[0], new char[]{'a', 'i', 'l'});
+		char[] head = new char[5];
+		char[] body = new char[5];
+		char[] trailer = new char[5];
+		buffer.take(head, body, trailer);
+		println(new String(head) + new String(body) + new String(trailer));
+		println(buffer.size());
+		
+		CharSequence huge = new CharSequence() {	// 2^30 chars without storage
+			public int length() { return 1 << 30; }
+			public char charAt(int index) { return 'x'; }
+			public CharSequence subSequence(int start, int end) { throw new UnsupportedOperationException(); }
+		};
+		try {
+			buffer.put(huge, huge, huge);	// total length overflows int
+			println(false);
+		}catch(IllegalStateException e) {
+			println(e.getMessage() + " " + buffer.size());
+		}
+		buffer.release();
+	}
+	
+	public static void testPublisher() throws InterruptedException {
+		RollingCharBufferPublisher publisher = new RollingCharBufferPublisher(RollingCharBuffer.allocate(16), 8, 4);
+		final StringBuilder received = new StringBuilder();
+		final Subscription[] subscription = new Subscription[1];
+		publisher.subscribe(new Subscriber<CharSequence>() {
+			public void onSubscribe(Subscription s) { subscription[0] = s; }
+			public void onNext(CharSequence item) { received.append(item).append('|'); }
+			public void onError(Throwable t) { received.append(t); }
+			public void onComplete() { received.append("complete"); }
+		});
+		println(publisher.put("abc", "def"));
+		println(publisher.put("ghi"));	// reached the limit without demand
+		subscription[0].request(2);
+		println(publisher.isPaused());
+		publisher.complete();
+		subscription[0].request(10);
+		println(received);
+		
+		// a producer waiting for demand wakes up on error
+		final RollingCharBufferPublisher paused = new RollingCharBufferPublisher(RollingCharBuffer.allocate(16), 4, 4);
+		paused.subscribe(new Subscriber<CharSequence>() {
+			public void onSubscribe(Subscription s) { }
+			public void onNext(CharSequence item) { }
+			public void onError(Throwable t) { }
+			public void onComplete() { }
+		});
+		paused.put("abcdef");
+		final boolean[] resumed = {true};
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					resumed[0] = paused.awaitResume();
+				}catch(InterruptedException e) {
+					// stop waiting
+				}
+			}
+		});
+		producer.setDaemon(true);
+		producer.start();
+		while(producer.getState() != Thread.State.WAITING) {
+			Thread.yield();
+		}
+		paused.error(new IllegalStateException("producer failed"));
+		producer.join(2000);
+		println(!producer.isAlive() && !resumed[0]);
+	}
+	
+	public static void testMulticast(RollingCharBuffer buffer) {
+		RollingCharBufferCursor parser = buffer.openCursor();
+		RollingCharBufferCursor archiver = buffer.openCursor(RollingCharBufferCursor.Policy.LAP);
+		RollingCharBufferCursor metrics = buffer.openCursor(RollingCharBufferCursor.Policy.DETACH);
+		
+		buffer.put("abcd");
+		println(parser.take() + new String(archiver.take(2)) + metrics.take());
+		println(buffer.size());	// held for the slowest cursor
+		parser.shift(3);
+		archiver.shift(2);
+		buffer.put("efghijkl");	// laps the archiver and detaches metrics
+		println(archiver.lapped() + " " + metrics.isDetached() + " " + buffer.size());
+		println(new String(parser.take(parser.size())) + " " + new String(archiver.take(archiver.size())));
+		try {
+			buffer.take();
+		}catch(IllegalStateException e) {
+			println(e.getMessage());
+		}
+		parser.close();
+		archiver.close();
+		metrics.close();
+		println(buffer.isEmpty());
+		buffer.release();
+	}
+	
+	public static void testRollingHash(RollingCharBuffer buffer) {
+		buffer.put("xyz");
+		buffer.enableRollingHash();
+		boolean matched = true;
+		for(int i = 0; i < 200; i++) {
+			buffer.put("record-" + i % 7 + ";");
+			buffer.shiftTakeIndex(buffer.size() > 20 ? 9 : 1);
+			matched &= buffer.windowHash() == buffer.hashOf(0, buffer.size());
+		}
+		buffer.takeAll();
+		buffer.put("abcabc");
+		println(matched + " " + (buffer.hashOf(0, 3) == buffer.hashOf(3, 3)) + " " + (buffer.hashOf(0, 3) != buffer.hashOf(1, 3)));
+		buffer.take(3);
+		println(buffer.windowHash() == buffer.hashOf(0, 3));
+		buffer.release();
+	}
+	
+	public static void testPrefetcher(Charset charset) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < 5000; i++) {
+			text.append(i).append(i % 10 == 0 ? "\u4e2d\ud83d\ude00\n" : ",");
+		}
+		Path path = Files.createTempFile("rolling", ".txt");
+		Files.write(path, text.toString().getBytes(charset));
+		
+		RollingCharBufferPrefetcher prefetcher = RollingCharBufferPrefetcher.attach(RollingCharBuffer.allocate(64), path, charset, 100, 7);
+		StringBuilder read = new StringBuilder();
+		char[] chars = new char[13];
+		int ch = prefetcher.take();
+		read.append((char) ch);
+		for(int n; (n = prefetcher.take(chars, 0, chars.length)) != -1; ) {
+			read.append(chars, 0, n);
+		}
+		println(text.toString().equals(read.toString()));
+		prefetcher.close();
+		Files.delete(path);
+		
+		// an unchecked failure of the channel is thrown to the consumer
+		ReadableByteChannel failing = new ReadableByteChannel() {
+			public int read(ByteBuffer dst) { throw new IllegalStateException("channel failed"); }
+			public boolean isOpen() { return true; }
+			public void close() { }
+		};
+		prefetcher = RollingCharBufferPrefetcher.attach(RollingCharBuffer.allocate(64), failing, charset, 100, 7);
+		try {
+			prefetcher.take();
+			println(false);
+		}catch(IOException e) {
+			println(e.getCause().getMessage());
+		}
+		
+		// a truncated sequence at the end of input is decoded to U+FFFD
+		byte[] truncated = {'a', (byte) 0xE4, (byte) 0xB8};
+		prefetcher = RollingCharBufferPrefetcher.attach(RollingCharBuffer.allocate(64),
+				Channels.newChannel(new ByteArrayInputStream(truncated)), StandardCharsets.UTF_8, 100, 7);
+		read.setLength(0);
+		for(int n; (n = prefetcher.take(chars, 0, chars.length)) != -1; ) {
+			read.append(chars, 0, n);
+		}
+		println(read.toString().equals(new String(truncated, StandardCharsets.UTF_8)));
+	}
+	
+	public static void testGrowthPolicy(GrowthPolicy policy) {
+		RollingCharBuffer[] buffers = {RollingCharBuffer.allocate(3), RollingCharBuffer.allocate(3, true)};
+		for(RollingCharBuffer buffer : buffers) {
+			buffer.setGrowthPolicy(policy);
+			StringBuilder expected = new StringBuilder();
+			StringBuilder actual = new StringBuilder();
+			for(int i = 0; i < 300; i++) {
+				char[] chars = new char[i % 23 == 0 ? 40 : i % 5];	// a single put larger than doubled capacity
+				Arrays.fill(chars, (char) ('a' + i % 26));
+				buffer.put(chars);
+				expected.append(chars);
+				if(buffer.size() > 2) { actual.append(buffer.take(buffer.size() - i % 3)); }
+			}
+			if(!buffer.isEmpty()) { actual.append(buffer.takeAll()); }
+			println(expected.toString().equals(actual.toString()) + " " + buffer.capacity());
+			buffer.release();
+		}
+	}
+	
+	public static void testParallelCopier(RollingCharBuffer buffer) {
+		buffer.setParallelCopier(new ParallelCopier(ForkJoinPool.commonPool(), 64, 16));
+		char[] chars = new char[1000];
+		for(int i = 0; i < chars.length; i++) {
+			chars[i] = (char) ('a' + i % 26);
+		}
+		buffer.put(chars, 0, 70);
+		buffer.take(50);
+		buffer.put(chars, 70, 930);	// wrapped content copied in parallel on growth
+		char[] taken = new char[1000];
+		buffer.take(taken, 0, 100);
+		buffer.put(chars, 0, 50);
+		buffer.takeAll(taken, 100);	// drained in parallel
+		println(new String(taken).equals(new String(chars, 50, 950) + new String(chars, 0, 50)));
+		boolean isDirect = !buffer.hasArray();
+		buffer.release();
+		
+		buffer = RollingCharBuffer.allocate(200, isDirect);
+		buffer.setParallelCopier(new ParallelCopier(ForkJoinPool.commonPool(), 64, 16));
+		buffer.put(chars, 0, 150);
+		buffer.take(80);
+		buffer.put(chars, 150, 120);	// wrapped 70 chars at the head of memory
+		buffer.put(chars, 270, 100);	// the wrapped part is moved after the old end in parallel on growth
+		println(new String(buffer.takeAll()).equals(new String(chars, 80, 290)));
+		buffer.release();
+	}
+	
+	public static void testSession(RollingCharBuffer buffer) {
+		buffer.enableRollingHash();
+		StringBuilder expected = new StringBuilder();
+		StringBuilder actual = new StringBuilder();
+		char[] chars = new char[7];
+		for(int i = 0; i < 200; i++) {
+			RollingCharBufferWriter writer = buffer.openWriter(i % 11);
+			while(writer.remaining() > 3) {
+				char ch = (char) ('a' + (i + writer.count()) % 26);
+				writer.put(ch);
+				expected.append(ch);
+			}
+			Arrays.fill(chars, (char) ('A' + i % 26));
+			writer.put(chars, 0, writer.remaining());
+			expected.append(chars, 0, Math.min(3, i % 11));
+			writer.close();
+			
+			RollingCharBufferReader reader = buffer.openReader(i % 13);
+			if(reader.available() > 0) {
+				char peeked = reader.peek();
+				actual.append(peeked == reader.take() ? peeked : '!');
+			}
+			int len = Math.min(reader.available(), chars.length);
+			reader.take(chars, 0, len);
+			actual.append(chars, 0, len);
+			reader.close();
+		}
+		boolean locked = false;
+		RollingCharBufferReader reader = buffer.openReader();
+		try {
+			buffer.size();
+		}catch(IllegalStateException e) {
+			locked = true;
+		}
+		reader.close();
+		boolean hashed = buffer.windowHash() == buffer.hashOf(0, buffer.size());
+		if(!buffer.isEmpty()) { actual.append(buffer.takeAll()); }
+		println(expected.toString().equals(actual.toString()) + " " + locked + " " + hashed);
+		
+		RollingCharBufferWriter writer;
+		if(buffer.hasArray() || buffer instanceof RollingDirectCharBuffer) {
+			buffer.shiftPutIndex(buffer.remained());	// exactly full
+			int capacity = buffer.capacity();
+			writer = buffer.openWriter();
+			println(writer.remaining());
+			writer.close();
+			println(buffer.capacity() == capacity);	// not expanded for an empty session
+		}
+		writer = buffer.openWriter(4);
+		writer.put('a');
+		buffer.release();	// a session failed in the middle doesn't keep the buffer
+		try {
+			writer.put('b');
+			println(false);
+		}catch(IllegalStateException e) {
+			println(e.getMessage());
+		}
+		writer.close();
+	}
+	
 	private static void testOpSeq(RollingCharBuffer buffer) {
 		println("====================="+buffer.getClass().getSimpleName()+"=====================");
 		